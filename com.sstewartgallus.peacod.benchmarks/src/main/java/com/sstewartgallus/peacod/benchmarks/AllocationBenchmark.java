@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.benchmarks;
+
+import com.sstewartgallus.peacod.runtime.Context;
+import com.sstewartgallus.peacod.runtime.PageBacking;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+    private static final int BATCH = 1024;
+
+    @Param({"HEAP", "AUTO"})
+    public PageBacking backing;
+
+    private Context context;
+    private int[] blocks;
+
+    @Setup
+    public void setup() {
+        context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing);
+        blocks = new int[BATCH];
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    // Unmapping the batch each time keeps the address space from growing,
+    // the page ids are reused lowest first so the batch stays contiguous
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void anonymousPage(Blackhole blackhole) {
+        var first = context.anonymousPage();
+        blackhole.consume(first);
+        for (var ii = 1; ii < BATCH; ++ii) {
+            blackhole.consume(context.anonymousPage());
+        }
+        context.freePages(first, BATCH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void mallocFree() {
+        for (var ii = 0; ii < BATCH; ++ii) {
+            blocks[ii] = context.malloc(16 + (ii & 63));
+        }
+        for (var ii = 0; ii < BATCH; ++ii) {
+            context.free(blocks[ii]);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.benchmarks;
+
+import com.sstewartgallus.peacod.runtime.Context;
+import com.sstewartgallus.peacod.runtime.PageBacking;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Strided gathers of a matrix column and bulk copies of a whole matrix
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkBenchmark {
+    @Param({"8", "30", "64"})
+    public int size;
+
+    @Param({"HEAP", "AUTO"})
+    public PageBacking backing;
+
+    private Context context;
+    private int matrix;
+    private int copy;
+    private int column;
+
+    private int[] arrayMatrix;
+    private int[] arrayCopy;
+    private int[] arrayColumn;
+
+    @Setup
+    public void setup() {
+        context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing);
+        var bytes = Integer.BYTES * size * size;
+        matrix = context.malloc(bytes);
+        copy = context.malloc(bytes);
+        column = context.malloc(Integer.BYTES * size);
+
+        arrayMatrix = new int[size * size];
+        arrayCopy = new int[size * size];
+        arrayColumn = new int[size];
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void gather() throws Throwable {
+        switch (size) {
+            case 8:
+                Sites.GATHER_8.invokeExact(context, column, matrix);
+                break;
+            case 30:
+                Sites.GATHER_30.invokeExact(context, column, matrix);
+                break;
+            case 64:
+                Sites.GATHER_64.invokeExact(context, column, matrix);
+                break;
+            default:
+                throw new IllegalStateException("no call site for size " + size);
+        }
+    }
+
+    @Benchmark
+    public void baselineGather() {
+        var size = this.size;
+        for (var ii = 0; ii < size; ++ii) {
+            arrayColumn[ii] = arrayMatrix[ii * size];
+        }
+    }
+
+    @Benchmark
+    public void copy() throws Throwable {
+        switch (size) {
+            case 8:
+                Sites.COPY_8.invokeExact(context, copy, matrix);
+                break;
+            case 30:
+                Sites.COPY_30.invokeExact(context, copy, matrix);
+                break;
+            case 64:
+                Sites.COPY_64.invokeExact(context, copy, matrix);
+                break;
+            default:
+                throw new IllegalStateException("no call site for size " + size);
+        }
+    }
+
+    @Benchmark
+    public void baselineCopy() {
+        System.arraycopy(arrayMatrix, 0, arrayCopy, 0, arrayMatrix.length);
+    }
+}
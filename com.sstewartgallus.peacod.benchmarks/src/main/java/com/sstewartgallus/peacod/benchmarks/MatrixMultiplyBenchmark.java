@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.benchmarks;
+
+import com.sstewartgallus.peacod.runtime.Context;
+import com.sstewartgallus.peacod.runtime.PageBacking;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The same naive multiply as examples/Baseline against matrices in a Context
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixMultiplyBenchmark {
+    // One site per access like the indify plugin emits for ContextCalls.Get
+    // and Set so each keeps its own profile, setup doesn't warm up the measured sites
+    private static final MethodHandle GET_A = getInt();
+    private static final MethodHandle GET_B = getInt();
+    private static final MethodHandle SET_C = setInt();
+    private static final MethodHandle SETUP_SET_A = setInt();
+    private static final MethodHandle SETUP_SET_B = setInt();
+
+    // The same sites linked through Dynalink, only there to compare against
+    private static final MethodHandle DYNALINK_GET_A = dynalinkGetInt();
+    private static final MethodHandle DYNALINK_GET_B = dynalinkGetInt();
+    private static final MethodHandle DYNALINK_SET_C = dynalinkSetInt();
+
+    @Param({"8", "30", "64"})
+    public int size;
+
+    @Param({"HEAP", "AUTO"})
+    public PageBacking backing;
+
+    private Context context;
+    private int a;
+    private int b;
+    private int c;
+
+    private int[][] arrayA;
+    private int[][] arrayB;
+    private int[][] arrayC;
+
+    private static MethodHandle getInt() {
+        return Sites.memorySite("GET:ELEMENT:memory", MethodType.methodType(int.class, Context.class, int.class));
+    }
+
+    private static MethodHandle setInt() {
+        return Sites.memorySite("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, int.class, int.class));
+    }
+
+    private static MethodHandle dynalinkGetInt() {
+        return Sites.site("GET:ELEMENT:memory", MethodType.methodType(int.class, Context.class, int.class));
+    }
+
+    private static MethodHandle dynalinkSetInt() {
+        return Sites.site("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, int.class, int.class));
+    }
+
+    @Setup
+    public void setup() throws Throwable {
+        var r = new Random(0);
+        context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing);
+        var bytes = Integer.BYTES * size * size;
+        a = context.malloc(bytes);
+        b = context.malloc(bytes);
+        c = context.malloc(bytes);
+
+        arrayA = new int[size][size];
+        arrayB = new int[size][size];
+        arrayC = new int[size][size];
+
+        for (var ii = 0; ii < size; ++ii) {
+            for (var jj = 0; jj < size; ++jj) {
+                var x = r.nextInt();
+                var y = r.nextInt();
+                SETUP_SET_A.invokeExact(context, a + Integer.BYTES * (ii * size + jj), x);
+                SETUP_SET_B.invokeExact(context, b + Integer.BYTES * (ii * size + jj), y);
+                arrayA[ii][jj] = x;
+                arrayB[ii][jj] = y;
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void multiply() throws Throwable {
+        var size = this.size;
+        var context = this.context;
+        for (var ii = 0; ii < size; ++ii) {
+            for (var kk = 0; kk < size; ++kk) {
+                var sum = 0;
+                for (var jj = 0; jj < size; ++jj) {
+                    sum += (int) GET_A.invokeExact(context, a + Integer.BYTES * (ii * size + jj))
+                            * (int) GET_B.invokeExact(context, b + Integer.BYTES * (jj * size + kk));
+                }
+                SET_C.invokeExact(context, c + Integer.BYTES * (ii * size + kk), sum);
+            }
+        }
+    }
+
+    @Benchmark
+    public void multiplyDynalink() throws Throwable {
+        var size = this.size;
+        var context = this.context;
+        for (var ii = 0; ii < size; ++ii) {
+            for (var kk = 0; kk < size; ++kk) {
+                var sum = 0;
+                for (var jj = 0; jj < size; ++jj) {
+                    sum += (int) DYNALINK_GET_A.invokeExact(context, a + Integer.BYTES * (ii * size + jj))
+                            * (int) DYNALINK_GET_B.invokeExact(context, b + Integer.BYTES * (jj * size + kk));
+                }
+                DYNALINK_SET_C.invokeExact(context, c + Integer.BYTES * (ii * size + kk), sum);
+            }
+        }
+    }
+
+    @Benchmark
+    public void baseline() {
+        var size = this.size;
+        for (var ii = 0; ii < size; ++ii) {
+            var cRow = arrayC[ii];
+            var aII = arrayA[ii];
+
+            for (var kk = 0; kk < size; ++kk) {
+                var sum = 0;
+                for (var jj = 0; jj < size; ++jj) {
+                    sum += aII[jj] * arrayB[jj][kk];
+                }
+                cRow[kk] = sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.benchmarks;
+
+import com.sstewartgallus.peacod.runtime.Context;
+import com.sstewartgallus.peacod.runtime.PageBacking;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Remapping a page invalidates every call site linked against the Context,
+// so each invocation pays for one relink of the get site
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelinkBenchmark {
+    @Param({"HEAP", "AUTO"})
+    public PageBacking backing;
+
+    private Context context;
+    private int page;
+
+    @Setup
+    public void setup() {
+        context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing);
+        page = context.anonymousPage();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int relink() throws Throwable {
+        context.unmapPage(page);
+        page = context.anonymousPage();
+        return (int) Sites.GET_INT.invokeExact(context, page);
+    }
+
+    @Benchmark
+    public int relinkDynalink() throws Throwable {
+        context.unmapPage(page);
+        page = context.anonymousPage();
+        return (int) Sites.DYNALINK_GET_INT.invokeExact(context, page);
+    }
+
+    @Benchmark
+    public int linked() throws Throwable {
+        return (int) Sites.GET_INT.invokeExact(context, page);
+    }
+}
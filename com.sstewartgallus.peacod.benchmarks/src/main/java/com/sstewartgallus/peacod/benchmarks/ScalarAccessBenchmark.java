@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.benchmarks;
+
+import com.sstewartgallus.peacod.runtime.Context;
+import com.sstewartgallus.peacod.runtime.PageBacking;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScalarAccessBenchmark {
+    private static final int INTS = 1024;
+
+    @Param({"HEAP", "AUTO"})
+    public PageBacking backing;
+
+    private Context context;
+    private int base;
+    private int[] array;
+
+    @Setup
+    public void setup() {
+        context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing);
+        base = context.malloc(Integer.BYTES * INTS);
+        array = new int[INTS];
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INTS)
+    public int get() throws Throwable {
+        var sum = 0;
+        for (var ii = 0; ii < INTS; ++ii) {
+            sum += (int) Sites.GET_INT.invokeExact(context, base + Integer.BYTES * ii);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INTS)
+    public void set() throws Throwable {
+        for (var ii = 0; ii < INTS; ++ii) {
+            Sites.SET_INT.invokeExact(context, base + Integer.BYTES * ii, ii);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INTS)
+    public int getDynalink() throws Throwable {
+        var sum = 0;
+        for (var ii = 0; ii < INTS; ++ii) {
+            sum += (int) Sites.DYNALINK_GET_INT.invokeExact(context, base + Integer.BYTES * ii);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INTS)
+    public void setDynalink() throws Throwable {
+        for (var ii = 0; ii < INTS; ++ii) {
+            Sites.DYNALINK_SET_INT.invokeExact(context, base + Integer.BYTES * ii, ii);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INTS)
+    public int baselineGet() {
+        var sum = 0;
+        for (var ii = 0; ii < INTS; ++ii) {
+            sum += array[ii];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INTS)
+    public void baselineSet() {
+        for (var ii = 0; ii < INTS; ++ii) {
+            array[ii] = ii;
+        }
+    }
+}
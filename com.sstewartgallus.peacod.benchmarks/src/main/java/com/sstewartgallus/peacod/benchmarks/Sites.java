@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.benchmarks;
+
+import com.sstewartgallus.peacod.runtime.ConstantBootstraps;
+import com.sstewartgallus.peacod.runtime.Context;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+// Call sites are bootstrapped by hand instead of by the indify plugin. Held in
+// static finals they are as constant to the JIT as an invokedynamic would be.
+final class Sites {
+    // What the indify plugin emits for ContextCalls.Get and ContextCalls.Set
+    static final MethodHandle GET_INT = memorySite("GET:ELEMENT:memory", MethodType.methodType(int.class, Context.class, int.class));
+    static final MethodHandle SET_INT = memorySite("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, int.class, int.class));
+
+    // The same accesses linked through Dynalink, only there to compare against
+    static final MethodHandle DYNALINK_GET_INT = site("GET:ELEMENT:memory", MethodType.methodType(int.class, Context.class, int.class));
+    static final MethodHandle DYNALINK_SET_INT = site("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, int.class, int.class));
+
+    // N and Stride are constants of a call site so every matrix size needs its own
+    static final MethodHandle GATHER_8 = gather(8);
+    static final MethodHandle GATHER_30 = gather(30);
+    static final MethodHandle GATHER_64 = gather(64);
+
+    static final MethodHandle COPY_8 = copy(8 * 8);
+    static final MethodHandle COPY_30 = copy(30 * 30);
+    static final MethodHandle COPY_64 = copy(64 * 64);
+
+    private Sites() {
+
+    }
+
+    static MethodHandle site(String operation, MethodType type, Object... args) {
+        return ConstantBootstraps.bootstrap(MethodHandles.lookup(), operation, type, args).dynamicInvoker();
+    }
+
+    static MethodHandle memorySite(String operation, MethodType type) {
+        return ConstantBootstraps.memory(MethodHandles.lookup(), operation, type).dynamicInvoker();
+    }
+
+    // Gathers a column of a size by size matrix
+    private static MethodHandle gather(int size) {
+        return site("CALL:METHOD:gather", MethodType.methodType(void.class, Context.class, int.class, int.class), "I", size, size);
+    }
+
+    private static MethodHandle copy(int count) {
+        return site("CALL:METHOD:copy", MethodType.methodType(void.class, Context.class, int.class, int.class), "I", count);
+    }
+}
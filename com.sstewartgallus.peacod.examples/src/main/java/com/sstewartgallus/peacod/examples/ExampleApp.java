@@ -35,8 +35,6 @@ class ExampleApp {
     private static final int M = 30;
 
     private static final boolean MEMTEST = true;
-    private static int top = -1;
-    private static int currentPage = -1;
 
     public static void main(String[] args) {
         var r = new Random();
@@ -45,9 +43,9 @@ class ExampleApp {
             memtest();
         }
 
-        var a = malloc(4 * (M * M));
-        var b = malloc(4 * (M * M));
-        var c = malloc(4 * (M * M));
+        var a = CONTEXT.malloc(4 * (M * M));
+        var b = CONTEXT.malloc(4 * (M * M));
+        var c = CONTEXT.malloc(4 * (M * M));
 
         System.out.println("a = 0x" + Integer.toHexString(a));
         System.out.println("b = 0x" + Integer.toHexString(b));
@@ -74,9 +72,9 @@ class ExampleApp {
             System.out.println();
         }
 
-        free();
-        free();
-        free();
+        CONTEXT.free(c);
+        CONTEXT.free(b);
+        CONTEXT.free(a);
     }
 
     private static void hotLoop(int a, int b, int c) {
@@ -143,7 +141,7 @@ class ExampleApp {
             rnd[ii] = r.nextInt();
         }
 
-        var a = malloc(4 * rnd.length);
+        var a = CONTEXT.malloc(4 * rnd.length);
 
         for (var ii = 0; ii < rnd.length; ++ii) {
             G.set(CONTEXT, a + 4 * ii, rnd[ii]);
@@ -157,26 +155,7 @@ class ExampleApp {
             }
         }
 
-        free();
-    }
-
-    private static int malloc(int size) {
-        if (size > Context.PAGE_SIZE) {
-            throw new Error("unimplemented");
-        }
-
-        var remaining = Context.PAGE_SIZE - top;
-        if (size > remaining || top < 0) {
-            top = 0;
-            currentPage = CONTEXT.anonymousPage();
-            System.err.println("new page " + Integer.toHexString(currentPage));
-        }
-        int ptr = currentPage + top;
-        top += size;
-        return ptr;
-    }
-
-    private static void free() {
+        CONTEXT.free(a);
     }
 
     private interface G {
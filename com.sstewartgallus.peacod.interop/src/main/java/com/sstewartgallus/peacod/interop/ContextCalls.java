@@ -46,7 +46,7 @@ public final class ContextCalls {
     @Retention(RetentionPolicy.CLASS)
     @Target({ElementType.METHOD})
     @Indy(
-            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "memory"),
             method = "SET:ELEMENT:memory")
     public @interface Set {
         @SuppressWarnings("unused")
@@ -56,7 +56,7 @@ public final class ContextCalls {
     @Retention(RetentionPolicy.CLASS)
     @Target({ElementType.METHOD})
     @Indy(
-            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "memory"),
             method = "GET:ELEMENT:memory")
     public @interface Get {
         @SuppressWarnings("unused")
@@ -144,4 +144,103 @@ public final class ContextCalls {
             method = "GET:ELEMENT:pages")
     public @interface GetPage {
     }
+
+    @SuppressWarnings("WeakerAccess")
+    @Retention(RetentionPolicy.CLASS)
+    @Target({ElementType.METHOD})
+    @Indy(
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            method = "CALL:METHOD:getVolatile")
+    public @interface GetVolatile {
+        @SuppressWarnings("unused")
+        Class<?> T();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Retention(RetentionPolicy.CLASS)
+    @Target({ElementType.METHOD})
+    @Indy(
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            method = "CALL:METHOD:setVolatile")
+    public @interface SetVolatile {
+        @SuppressWarnings("unused")
+        Class<?> T();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Retention(RetentionPolicy.CLASS)
+    @Target({ElementType.METHOD})
+    @Indy(
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            method = "CALL:METHOD:getAcquire")
+    public @interface GetAcquire {
+        @SuppressWarnings("unused")
+        Class<?> T();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Retention(RetentionPolicy.CLASS)
+    @Target({ElementType.METHOD})
+    @Indy(
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            method = "CALL:METHOD:setRelease")
+    public @interface SetRelease {
+        @SuppressWarnings("unused")
+        Class<?> T();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Retention(RetentionPolicy.CLASS)
+    @Target({ElementType.METHOD})
+    @Indy(
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            method = "CALL:METHOD:getOpaque")
+    public @interface GetOpaque {
+        @SuppressWarnings("unused")
+        Class<?> T();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Retention(RetentionPolicy.CLASS)
+    @Target({ElementType.METHOD})
+    @Indy(
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            method = "CALL:METHOD:setOpaque")
+    public @interface SetOpaque {
+        @SuppressWarnings("unused")
+        Class<?> T();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Retention(RetentionPolicy.CLASS)
+    @Target({ElementType.METHOD})
+    @Indy(
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            method = "CALL:METHOD:compareAndSet")
+    public @interface CompareAndSet {
+        @SuppressWarnings("unused")
+        Class<?> T();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Retention(RetentionPolicy.CLASS)
+    @Target({ElementType.METHOD})
+    @Indy(
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            method = "CALL:METHOD:getAndAdd")
+    public @interface GetAndAdd {
+        @SuppressWarnings("unused")
+        Class<?> T();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Retention(RetentionPolicy.CLASS)
+    @Target({ElementType.METHOD})
+    @Indy(
+            bootstrap = @Bootstrap(clazz = ConstantBootstraps.class, method = "bootstrap"),
+            method = "CALL:METHOD:getAndSet")
+    public @interface GetAndSet {
+        @SuppressWarnings("unused")
+        Class<?> T();
+    }
 }
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// malloc and free over the pages of a Context. Blocks up to a quarter of a
+// page come out of slab pages dedicated to one power of two size class,
+// anything bigger gets a span of whole pages.
+//
+// Each thread keeps a small cache of free blocks per size class and only
+// takes the allocator lock to move a batch of blocks in or out of it.
+final class Allocator {
+    // Every block is aligned for long accesses
+    private static final int MIN_BLOCK_SHIFT = 3;
+
+    // Batches move at most 32 blocks or 16 KiB, whichever is less, but always at least one block
+    private static final int MAX_BATCH = 32;
+    private static final int BATCH_BYTES = 16 * 1024;
+
+    private final ContextImpl context;
+    private final int indexBits;
+    private final int indexMask;
+    private final int classCount;
+
+    private final IntStack[] freeBlocks;
+
+    // Bump allocation through the newest slab page of each size class
+    private final int[] slabTop;
+    private final int[] slabEnd;
+
+    // Free spans keyed by their length in pages
+    private final TreeMap<Integer, IntStack> freeSpans = new TreeMap<>();
+
+    // By page id: size class + 1 for slab pages, -length for the first page
+    // of a live span and 0 for everything else.
+    // Only written under the lock. Volatile so free can read it without
+    // the lock, an address is always handed over after its entry is set.
+    private volatile int[] pageInfo = new int[0];
+
+    // By page id for slab pages: a bit per block, set while the block is
+    // handed out. Blocks in a free list or a cache have their bit clear so
+    // free catches double frees and blocks that were never handed out.
+    // Published the same way as pageInfo.
+    private volatile AtomicLongArray[] allocatedBlocks = new AtomicLongArray[0];
+
+    // Blocks cached by a thread that dies are not reused, the caches are
+    // small so that stays cheap for short lived threads
+    private final ThreadLocal<IntStack[]> caches;
+
+    Allocator(ContextImpl context, int indexBits) {
+        this.context = context;
+        this.indexBits = indexBits;
+        this.indexMask = (1 << indexBits) - 1;
+        this.classCount = indexBits - 2 - MIN_BLOCK_SHIFT + 1;
+        this.freeBlocks = new IntStack[classCount];
+        for (var ii = 0; ii < classCount; ++ii) {
+            freeBlocks[ii] = new IntStack();
+        }
+        this.slabTop = new int[classCount];
+        this.slabEnd = new int[classCount];
+        this.caches = ThreadLocal.withInitial(() -> new IntStack[classCount]);
+    }
+
+    private static int batchSize(int sizeClass) {
+        return Math.max(1, Math.min(MAX_BATCH, BATCH_BYTES >>> (MIN_BLOCK_SHIFT + sizeClass)));
+    }
+
+    private static int sizeClass(int size) {
+        if (size <= 1 << MIN_BLOCK_SHIFT) {
+            return 0;
+        }
+        return Integer.SIZE - Integer.numberOfLeadingZeros(size - 1) - MIN_BLOCK_SHIFT;
+    }
+
+    int malloc(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative size: " + size);
+        }
+        var sizeClass = sizeClass(size);
+        if (sizeClass >= classCount) {
+            return allocateSpan(size);
+        }
+        var cache = cache(sizeClass);
+        if (cache.isEmpty()) {
+            refill(sizeClass, cache);
+        }
+        var addr = cache.pop();
+        setAllocated(addr, sizeClass, true);
+        return addr;
+    }
+
+    void free(int addr) {
+        var info = infoOf(addr);
+        if (info < 0) {
+            freeSpan(addr, -info);
+            return;
+        }
+        var sizeClass = info - 1;
+        if (!setAllocated(addr, sizeClass, false)) {
+            throw new IllegalArgumentException("not an allocated block: 0x" + Integer.toHexString(addr));
+        }
+        var cache = cache(sizeClass);
+        var batch = batchSize(sizeClass);
+        if (cache.size() >= 2 * batch) {
+            flush(sizeClass, cache, batch);
+        }
+        cache.push(addr);
+    }
+
+    int realloc(int addr, int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative size: " + size);
+        }
+        var info = infoOf(addr);
+        if (info > 0 && !isAllocated(addr, info - 1)) {
+            throw new IllegalArgumentException("not an allocated block: 0x" + Integer.toHexString(addr));
+        }
+        long capacity = info > 0 ? 1 << (MIN_BLOCK_SHIFT + info - 1) : (long) -info << indexBits;
+        if (size <= capacity) {
+            return addr;
+        }
+        var newAddr = malloc(size);
+        context.copy(newAddr, addr, (int) capacity);
+        free(addr);
+        return newAddr;
+    }
+
+    // Whole pages for a Region, they go back to the same pool as freed spans
+    synchronized int reservePages(int pages) {
+        return takePages(pages);
+    }
+
+    synchronized void returnPages(int pageId, int pages) {
+        releasePages(pageId, pages);
+    }
+
+    // Unmaps all free spans at once so linked call sites are only invalidated once
+    synchronized void trim() {
+        var spanCount = 0;
+        for (var spans : freeSpans.values()) {
+            spanCount += spans.size();
+        }
+        if (spanCount == 0) {
+            return;
+        }
+        var addresses = new long[spanCount];
+        var counts = new int[spanCount];
+        var ii = 0;
+        for (var entry : freeSpans.entrySet()) {
+            var pages = entry.getKey();
+            var spans = entry.getValue();
+            while (!spans.isEmpty()) {
+                addresses[ii] = (long) spans.pop() << indexBits;
+                counts[ii] = pages;
+                ++ii;
+            }
+        }
+        freeSpans.clear();
+        context.freePageSpans(addresses, counts);
+    }
+
+    private IntStack cache(int sizeClass) {
+        var caches = this.caches.get();
+        var cache = caches[sizeClass];
+        if (cache == null) {
+            cache = new IntStack();
+            caches[sizeClass] = cache;
+        }
+        return cache;
+    }
+
+    private synchronized void refill(int sizeClass, IntStack cache) {
+        for (var ii = batchSize(sizeClass); ii > 0; --ii) {
+            cache.push(allocateBlock(sizeClass));
+        }
+    }
+
+    private synchronized void flush(int sizeClass, IntStack cache, int count) {
+        var free = freeBlocks[sizeClass];
+        for (var ii = 0; ii < count; ++ii) {
+            free.push(cache.pop());
+        }
+    }
+
+    private synchronized int allocateSpan(int size) {
+        var pages = ((size - 1) >>> indexBits) + 1;
+        var pageId = takePages(pages);
+        pageInfo[pageId] = -pages;
+        return pageId << indexBits;
+    }
+
+    private synchronized void freeSpan(int addr, int pages) {
+        var pageId = addr >>> indexBits;
+        // Recheck under the lock so two racing frees of one span can't both release it
+        if (pageInfo[pageId] != -pages) {
+            throw new IllegalArgumentException("not an allocated block: 0x" + Integer.toHexString(addr));
+        }
+        pageInfo[pageId] = 0;
+        releasePages(pageId, pages);
+    }
+
+    private int infoOf(int addr) {
+        var pageId = addr >>> indexBits;
+        var pageInfo = this.pageInfo;
+        var info = pageId < pageInfo.length ? pageInfo[pageId] : 0;
+        if (info > 0) {
+            var blockMask = (1 << (MIN_BLOCK_SHIFT + info - 1)) - 1;
+            if ((addr & blockMask) == 0) {
+                return info;
+            }
+        } else if (info < 0 && (addr & indexMask) == 0) {
+            return info;
+        }
+        throw new IllegalArgumentException("not an allocated block: 0x" + Integer.toHexString(addr));
+    }
+
+    // Sets or clears a slab block's bit, returns whether it was set before
+    private boolean setAllocated(int addr, int sizeClass, boolean allocated) {
+        var bits = allocatedBlocks[addr >>> indexBits];
+        var block = (addr & indexMask) >>> (MIN_BLOCK_SHIFT + sizeClass);
+        var bit = 1L << block;
+        var old = allocated
+                ? bits.getAndAccumulate(block >>> 6, bit, (x, y) -> x | y)
+                : bits.getAndAccumulate(block >>> 6, ~bit, (x, y) -> x & y);
+        return (old & bit) != 0;
+    }
+
+    private boolean isAllocated(int addr, int sizeClass) {
+        var bits = allocatedBlocks[addr >>> indexBits];
+        var block = (addr & indexMask) >>> (MIN_BLOCK_SHIFT + sizeClass);
+        return (bits.get(block >>> 6) & 1L << block) != 0;
+    }
+
+    private int allocateBlock(int sizeClass) {
+        var free = freeBlocks[sizeClass];
+        if (!free.isEmpty()) {
+            return free.pop();
+        }
+        // The end of the last int page wraps around to 0, only compare for equality
+        if (slabTop[sizeClass] == slabEnd[sizeClass]) {
+            var pageId = takePages(1);
+            pageInfo[pageId] = sizeClass + 1;
+            allocatedBlocks[pageId] = new AtomicLongArray(Math.max(1, (1 << indexBits) >>> (MIN_BLOCK_SHIFT + sizeClass + 6)));
+            slabTop[sizeClass] = pageId << indexBits;
+            slabEnd[sizeClass] = slabTop[sizeClass] + (1 << indexBits);
+        }
+        var addr = slabTop[sizeClass];
+        slabTop[sizeClass] = addr + (1 << (MIN_BLOCK_SHIFT + sizeClass));
+        return addr;
+    }
+
+    // Best fit from the free spans, splitting off the rest
+    private int takePages(int pages) {
+        var entry = freeSpans.ceilingEntry(pages);
+        int pageId;
+        if (entry == null) {
+            pageId = context.anonymousPages(pages);
+            if (pageId + pages > pageInfo.length) {
+                var n = Math.max(2 * pageInfo.length, pageId + pages);
+                pageInfo = Arrays.copyOf(pageInfo, n);
+                allocatedBlocks = Arrays.copyOf(allocatedBlocks, n);
+            }
+            return pageId;
+        }
+        var length = entry.getKey();
+        var spans = entry.getValue();
+        pageId = spans.pop();
+        if (spans.isEmpty()) {
+            freeSpans.remove(length);
+        }
+        if (length > pages) {
+            releasePages(pageId + pages, length - pages);
+        }
+        return pageId;
+    }
+
+    // Spans are not coalesced, a freed span is only reused whole or split
+    private void releasePages(int pageId, int pages) {
+        freeSpans.computeIfAbsent(pages, (k) -> new IntStack()).push(pageId);
+    }
+
+    private static final class IntStack {
+        private int[] values = new int[8];
+        private int size = 0;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void push(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        int pop() {
+            return values[--size];
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import jdk.dynalink.CallSiteDescriptor;
+import jdk.dynalink.Operation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Carries the static bootstrap arguments (T, N, Stride...) through to the linker
+final class BootstrapCallSiteDescriptor extends CallSiteDescriptor {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final Object[] staticArguments;
+
+    // Shared with every changed copy so they describe the one call site
+    private final AtomicInteger links;
+    private final CallSiteProfile profile;
+
+    BootstrapCallSiteDescriptor(MethodHandles.Lookup lookup, Operation operation, MethodType methodType, Object[] staticArguments) {
+        this(lookup, operation, methodType, staticArguments.length == 0 ? NO_ARGUMENTS : staticArguments.clone(), new AtomicInteger(), new CallSiteProfile());
+    }
+
+    private BootstrapCallSiteDescriptor(MethodHandles.Lookup lookup, Operation operation, MethodType methodType, Object[] staticArguments, AtomicInteger links, CallSiteProfile profile) {
+        super(lookup, operation, methodType);
+        this.staticArguments = staticArguments;
+        this.links = links;
+        this.profile = profile;
+    }
+
+    static CallSiteProfile profileOf(CallSiteDescriptor descriptor) {
+        if (!(descriptor instanceof BootstrapCallSiteDescriptor)) {
+            return new CallSiteProfile();
+        }
+        return ((BootstrapCallSiteDescriptor) descriptor).profile;
+    }
+
+    // Returns how many times the call site has been linked including this one
+    static int countLink(CallSiteDescriptor descriptor) {
+        if (!(descriptor instanceof BootstrapCallSiteDescriptor)) {
+            return 1;
+        }
+        return ((BootstrapCallSiteDescriptor) descriptor).links.incrementAndGet();
+    }
+
+    static Object[] staticArgumentsOf(CallSiteDescriptor descriptor) {
+        if (!(descriptor instanceof BootstrapCallSiteDescriptor)) {
+            return NO_ARGUMENTS;
+        }
+        return ((BootstrapCallSiteDescriptor) descriptor).staticArguments;
+    }
+
+    @Override
+    protected CallSiteDescriptor changeMethodTypeInternal(MethodType newMethodType) {
+        return new BootstrapCallSiteDescriptor(getLookupPrivileged(), getOperation(), newMethodType, staticArguments, links, profile);
+    }
+
+    @Override
+    protected CallSiteDescriptor changeOperationInternal(Operation newOperation) {
+        return new BootstrapCallSiteDescriptor(getLookupPrivileged(), newOperation, getMethodType(), staticArguments, links, profile);
+    }
+}
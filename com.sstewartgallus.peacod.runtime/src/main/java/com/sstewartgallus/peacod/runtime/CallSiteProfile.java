@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import java.util.Arrays;
+
+// The page types and pages a call site has seen, shared by every link of the site
+final class CallSiteProfile {
+    // Past this many types a site stops specializing
+    static final int MAX_TYPES = 4;
+
+    private static final int NO_PAGE = -1;
+    private static final int MANY_PAGES = -2;
+
+    private PageType<?>[] types = new PageType<?>[0];
+
+    private Context pageContext;
+    private int pageId = NO_PAGE;
+
+    private boolean unstable = false;
+
+    // Relinked too often, memory accesses then link to a generic handle
+    synchronized void markUnstable() {
+        unstable = true;
+    }
+
+    synchronized boolean isUnstable() {
+        return unstable;
+    }
+
+    // True while the site has only ever touched the one page of the one context
+    synchronized boolean recordPage(Context context, int pageId) {
+        if (this.pageId == MANY_PAGES) {
+            return false;
+        }
+        if (this.pageId == NO_PAGE) {
+            this.pageContext = context;
+            this.pageId = pageId;
+            return true;
+        }
+        if (this.pageContext == context && this.pageId == pageId) {
+            return true;
+        }
+        this.pageContext = null;
+        this.pageId = MANY_PAGES;
+        return false;
+    }
+
+    // Returns every type seen so far including type, or null once the site is megamorphic
+    synchronized PageType<?>[] recordType(PageType<?> type) {
+        if (types == null) {
+            return null;
+        }
+        for (var seen : types) {
+            if (seen == type) {
+                return types;
+            }
+        }
+        if (types.length == MAX_TYPES) {
+            types = null;
+            return null;
+        }
+        types = Arrays.copyOf(types, types.length + 1);
+        types[types.length - 1] = type;
+        return types;
+    }
+}
@@ -17,21 +17,77 @@ package com.sstewartgallus.peacod.runtime;
 
 import jdk.dynalink.*;
 import jdk.dynalink.support.ChainedCallSite;
+import jdk.dynalink.support.SimpleRelinkableCallSite;
 
 import java.lang.invoke.CallSite;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.Collections;
-
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Call sites are configured through system properties prefixed with
+// com.sstewartgallus.peacod.runtime. Sites from bootstrap and from memory
+// follow the same policy:
+//   callSites                 chained (the default) or monomorphic
+//   maxChainLength            invocations a chained call site keeps, 8 by default
+//   unstableRelinkThreshold   relinks after which memory accesses link to a
+//                             generic unguarded handle, 0 (the default) never does
+//   syncOnRelink              sync every thread with a relinked call site, off by default
+//   linkerMetrics             register the linker's MXBean, off by default
 public final class ConstantBootstraps {
+    private static final String PREFIX = "com.sstewartgallus.peacod.runtime.";
+
     private static final DynamicLinker DYNALINKER;
+    private static final Map<String, StandardOperation> BASES = new HashMap<>();
+    private static final Map<String, StandardNamespace> NAMESPACES = new HashMap<>();
+    private static final ConcurrentHashMap<String, Operation> OPERATIONS = new ConcurrentHashMap<>();
+    private static final boolean MONOMORPHIC;
+    private static final int MAX_CHAIN_LENGTH;
+    private static final int UNSTABLE_RELINK_THRESHOLD;
 
     static {
+        for (var base : StandardOperation.values()) {
+            BASES.put(base.name(), base);
+        }
+        for (var namespace : StandardNamespace.values()) {
+            NAMESPACES.put(namespace.name(), namespace);
+        }
+
+        var callSites = System.getProperty(PREFIX + "callSites", "chained");
+        switch (callSites) {
+            case "chained":
+                MONOMORPHIC = false;
+                break;
+            case "monomorphic":
+                MONOMORPHIC = true;
+                break;
+            default:
+                throw new IllegalArgumentException(PREFIX + "callSites: " + callSites);
+        }
+        MAX_CHAIN_LENGTH = Integer.getInteger(PREFIX + "maxChainLength", 8);
+        if (MAX_CHAIN_LENGTH <= 0) {
+            throw new IllegalArgumentException(PREFIX + "maxChainLength: " + MAX_CHAIN_LENGTH);
+        }
+        UNSTABLE_RELINK_THRESHOLD = Integer.getInteger(PREFIX + "unstableRelinkThreshold", 0);
+        if (UNSTABLE_RELINK_THRESHOLD < 0) {
+            throw new IllegalArgumentException(PREFIX + "unstableRelinkThreshold: " + UNSTABLE_RELINK_THRESHOLD);
+        }
+
+        if (Boolean.getBoolean(PREFIX + "linkerMetrics")) {
+            LinkerMetrics.register();
+        }
+
         var mylinker = new Linker();
 
         var fact = new DynamicLinkerFactory();
-        fact.setSyncOnRelink(true);
+        // Every linkage is either guarded or invalidated through a switch point,
+        // so a thread that runs a stale target for a while just relinks itself
+        fact.setSyncOnRelink(Boolean.getBoolean(PREFIX + "syncOnRelink"));
+        // Unmapping pages relinks every memory call site, which isn't instability
+        fact.setUnstableRelinkThreshold(UNSTABLE_RELINK_THRESHOLD);
         fact.setPrioritizedLinkers(Collections.singletonList(mylinker));
         DYNALINKER = fact.createLinker();
     }
@@ -40,49 +96,95 @@ public final class ConstantBootstraps {
     // This method is looked up and called dynamically
     @SuppressWarnings("unused")
     public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type, Object... args) {
-        var callSiteDescriptor = new CallSiteDescriptor(lookup, parseOperation(name, args), type);
-        var callSite = new ChainedCallSite(callSiteDescriptor);
-        return DYNALINKER.link(callSite);
+        var callSiteDescriptor = new BootstrapCallSiteDescriptor(lookup, parseOperation(name), type, args);
+        if (MONOMORPHIC) {
+            return DYNALINKER.link(new SimpleRelinkableCallSite(callSiteDescriptor));
+        }
+        return DYNALINKER.link(new BoundedCallSite(callSiteDescriptor));
     }
 
-    private static Operation parseOperation(String operation, Object[] args) {
-        var parts = operation.split(":");
+    // Memory gets and sets link straight to the context instead of through Dynalink.
+    // This method is looked up and called dynamically.
+    @SuppressWarnings("unused")
+    public static CallSite memory(MethodHandles.Lookup lookup, String name, MethodType type, Object... args) {
+        boolean store;
+        switch (name) {
+            case "GET:ELEMENT:memory":
+                store = false;
+                break;
+            case "SET:ELEMENT:memory":
+                store = true;
+                break;
+            default:
+                throw new IllegalArgumentException(name);
+        }
+        if (ContextImpl.memoryAccessor(store, type) == null) {
+            throw new IllegalArgumentException(name + type);
+        }
+        return new MemoryCallSite(name, store, type, MONOMORPHIC ? 1 : MAX_CHAIN_LENGTH, UNSTABLE_RELINK_THRESHOLD);
+    }
 
-        var base = parts[0];
-        String[] namespacesStrings = null;
-        if (parts.length > 1) {
-            namespacesStrings = parts[1].split("\\|");
+    private static final class BoundedCallSite extends ChainedCallSite {
+        BoundedCallSite(CallSiteDescriptor descriptor) {
+            super(descriptor);
         }
 
-        Object name = null;
-        if (parts.length > 2) {
-            name = parts[2];
+        @Override
+        protected int getMaxChainLength() {
+            return MAX_CHAIN_LENGTH;
         }
+    }
 
-        Operation op = StandardOperation.valueOf(base);
+    // Call sites share a handful of operation strings, so each is parsed only once
+    private static Operation parseOperation(String operation) {
+        return OPERATIONS.computeIfAbsent(operation, ConstantBootstraps::parse);
+    }
+
+    // BASE[:NAMESPACE|NAMESPACE...[:name]], unknown namespaces are skipped
+    private static Operation parse(String operation) {
+        var baseEnd = operation.indexOf(':');
+        var base = baseEnd < 0 ? operation : operation.substring(0, baseEnd);
 
-        if (namespacesStrings != null) {
-            var namespaces = new ArrayList<StandardNamespace>();
-            for (var str : namespacesStrings) {
-                StandardNamespace namespace;
-                try {
-                    namespace = StandardNamespace.valueOf(str);
-                } catch (IllegalArgumentException ex) {
-                    continue;
-                }
+        Operation op = BASES.get(base);
+        if (op == null) {
+            throw new IllegalArgumentException(base);
+        }
+        if (baseEnd < 0) {
+            return op;
+        }
+
+        var namespacesEnd = operation.indexOf(':', baseEnd + 1);
+        var namespacesString = namespacesEnd < 0
+                ? operation.substring(baseEnd + 1)
+                : operation.substring(baseEnd + 1, namespacesEnd);
+
+        var namespaces = new ArrayList<StandardNamespace>();
+        var start = 0;
+        for (;;) {
+            var end = namespacesString.indexOf('|', start);
+            var namespace = NAMESPACES.get(end < 0 ? namespacesString.substring(start) : namespacesString.substring(start, end));
+            if (namespace != null) {
                 namespaces.add(namespace);
             }
-
-            // Throw an error if we cannot find any namespaces we understand
-            if (namespaces.isEmpty()) {
-                throw new IllegalArgumentException(parts[1]);
+            if (end < 0) {
+                break;
             }
+            start = end + 1;
+        }
 
-            op = op.withNamespaces(namespaces.toArray(new StandardNamespace[0]));
+        // Throw an error if we cannot find any namespaces we understand
+        if (namespaces.isEmpty()) {
+            throw new IllegalArgumentException(namespacesString);
         }
 
-        if (name != null) {
-            op = op.named(name);
+        op = op.withNamespaces(namespaces.toArray(new StandardNamespace[0]));
+
+        if (namespacesEnd >= 0) {
+            var nameEnd = operation.indexOf(':', namespacesEnd + 1);
+            var name = nameEnd < 0 ? operation.substring(namespacesEnd + 1) : operation.substring(namespacesEnd + 1, nameEnd);
+            if (!name.isEmpty()) {
+                op = op.named(name);
+            }
         }
 
         return op;
@@ -18,24 +18,98 @@ package com.sstewartgallus.peacod.runtime;
 import jdk.dynalink.Operation;
 import jdk.dynalink.linker.GuardedInvocation;
 
+import java.io.IOException;
 import java.lang.invoke.MethodType;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
 
 @SuppressWarnings("unused")
-public abstract class Context {
+public abstract class Context implements AutoCloseable {
 
+    // The page shift of newInstance(), others pick their own
     static final int INDEX_BITS = 12;
+
+    // Only the default page size, a context's own is pageSize()
+    @Deprecated
     public static final int PAGE_SIZE = 1 << INDEX_BITS;
-    static final int INDEX_MASK = PAGE_SIZE - 1;
+
+    // From 4 KiB up to 1 GiB pages, the smallest page is also the default
+    public static final int MIN_PAGE_SHIFT = INDEX_BITS;
+    public static final int MAX_PAGE_SHIFT = 30;
 
     Context() {
 
     }
 
     public static Context newInstance() {
-        return new ContextImpl();
+        return newInstance(INDEX_BITS, PageBacking.HEAP);
+    }
+
+    public static Context newInstance(int pageShift) {
+        return newInstance(pageShift, PageBacking.HEAP);
+    }
+
+    public static Context newInstance(int pageShift, PageBacking backing) {
+        if (pageShift < MIN_PAGE_SHIFT || pageShift > MAX_PAGE_SHIFT) {
+            throw new IllegalArgumentException("page shift out of range: " + pageShift);
+        }
+        return new ContextImpl(pageShift, Objects.requireNonNull(backing));
+    }
+
+    public abstract int pageShift();
+
+    public final int pageSize() {
+        return 1 << pageShift();
     }
 
     public abstract int anonymousPage();
 
-    abstract GuardedInvocation link(Operation operation, Object[] namespaces, Object name, MethodType methodType, Object reciever, Object... arguments);
+    // Works past the first 4 GiB, use with (Context, long) call sites
+    public abstract long anonymousLongPage();
+
+    // Unmapped page ids are reused by later mappings. Accessing an unmapped
+    // page throws IllegalStateException, don't unmap pages used by malloc or a Region.
+    public abstract void freePages(long address, int count);
+
+    // int addresses past 2 GiB are negative, so don't sign extend them
+    public final void freePages(int address, int count) {
+        freePages(Integer.toUnsignedLong(address), count);
+    }
+
+    public final void unmapPage(long address) {
+        freePages(address, 1);
+    }
+
+    public final void unmapPage(int address) {
+        freePages(address, 1);
+    }
+
+    // Unmaps the free pages malloc and regions keep around for reuse
+    public abstract void trim();
+
+    // Blocks are 8 byte aligned and live below 4 GiB. free and realloc only
+    // take addresses returned by malloc or realloc.
+    public abstract int malloc(int size);
+
+    public abstract void free(int addr);
+
+    public abstract int realloc(int addr, int size);
+
+    // Scratch memory that is released all at once
+    public abstract Region newRegion();
+
+    // Maps size bytes of the file into fresh pages, the last page is short if size isn't page aligned
+    public abstract long mapFile(FileChannel channel, long position, long size, FileChannel.MapMode mode) throws IOException;
+
+    // Writes back changes to read-write file mappings overlapping the range
+    public abstract void force(long address, long size);
+
+    // Unmaps every page and frees EXPLICIT memory, must not race with accesses (see PageBacking.EXPLICIT)
+    @Override
+    public abstract void close();
+
+    // Links a memory get (store false) or set for MemoryCallSite
+    abstract GuardedInvocation linkMemory(boolean store, CallSiteProfile profile, MethodType methodType, Object... arguments);
+
+    abstract GuardedInvocation link(Operation operation, Object[] namespaces, Object name, Object[] staticArguments, CallSiteProfile profile, MethodType methodType, Object reciever, Object... arguments);
 }
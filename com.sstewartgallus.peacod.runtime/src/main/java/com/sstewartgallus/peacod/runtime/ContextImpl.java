@@ -21,73 +21,141 @@ import jdk.dynalink.StandardOperation;
 import jdk.dynalink.linker.GuardedInvocation;
 import jdk.dynalink.linker.support.Guards;
 
+import java.io.IOException;
 import java.lang.invoke.*;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import static java.lang.invoke.MethodHandles.lookup;
 
 @FunctionalInterface
-interface GetPage {
-    static MethodHandle toHandle(GetPage g) {
-        return ContextImpl.GET_PAGE.bindTo(g);
+interface ResolvePage {
+    static MethodHandle toHandle(ResolvePage g) {
+        return ContextImpl.RESOLVE_PAGE.bindTo(g);
     }
 
     @SuppressWarnings("unused")
-    Page getPage(Context context, int pageId) throws Relink;
+    Object resolvePage(int addr);
 }
 
 @FunctionalInterface
-interface GetInt {
-    static MethodHandle toHandle(GetInt g) {
-        return ContextImpl.GET.bindTo(g);
+interface ResolveLongPage {
+    static MethodHandle toHandle(ResolveLongPage g) {
+        return ContextImpl.RESOLVE_LONG_PAGE.bindTo(g);
     }
 
     @SuppressWarnings("unused")
-    int getInt(Context context, int addr) throws Relink;
+    Object resolvePage(long addr);
 }
 
 @FunctionalInterface
-interface SetInt {
+interface ResolvePageType {
+    static MethodHandle toHandle(ResolvePageType g) {
+        return ContextImpl.RESOLVE_PAGE_TYPE.bindTo(g);
+    }
+
+    @SuppressWarnings("unused")
+    PageType<?> resolvePageType(int addr);
+}
 
-    static MethodHandle toHandle(SetInt g) {
-        return ContextImpl.SET.bindTo(g);
+@FunctionalInterface
+interface ResolveLongPageType {
+    static MethodHandle toHandle(ResolveLongPageType g) {
+        return ContextImpl.RESOLVE_LONG_PAGE_TYPE.bindTo(g);
     }
 
     @SuppressWarnings("unused")
-    void setInt(Context context, int addr, int value) throws Relink;
+    PageType<?> resolvePageType(long addr);
 }
 
-abstract class PageType<P> {
-    abstract P anonymousPage();
+@FunctionalInterface
+interface Reduce {
+    static MethodHandle toHandle(Reduce g) {
+        return ContextImpl.REDUCE.bindTo(g);
+    }
 
-    abstract int getInt(P page, int index);
+    @SuppressWarnings("unused")
+    int reduce(Context context, int addr);
+}
 
-    abstract void setInt(P page, int index, int value);
+@FunctionalInterface
+interface Combine {
+    static MethodHandle toHandle(Combine g) {
+        return ContextImpl.COMBINE.bindTo(g);
+    }
 
-    public abstract Page box(P page);
+    @SuppressWarnings("unused")
+    int combine(Context context, int left, int right);
 }
 
-final class ByteBufferPage extends PageType<ByteBuffer> {
-    static final PageType TYPE = new ByteBufferPage();
+@FunctionalInterface
+interface Transfer {
+    static MethodHandle toHandle(Transfer g) {
+        return ContextImpl.TRANSFER.bindTo(g);
+    }
+
+    @SuppressWarnings("unused")
+    void transfer(Context context, int dest, int src);
+}
+
+class ByteBufferPage extends PageType<ByteBuffer> {
+    static final PageType<ByteBuffer> TYPE = new ByteBufferPage();
+    static final int ALIGNMENT = Long.BYTES;
+    private static final VarHandle BYTE_BUFFER_AS_SHORTS = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.nativeOrder());
     private static final VarHandle BYTE_BUFFER_AS_INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle BYTE_BUFFER_AS_LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
 
-    private ByteBufferPage() {
+    ByteBufferPage() {
 
     }
 
     @Override
-    ByteBuffer anonymousPage() {
-        // FIXME: handle alignment
-        return ByteBuffer
-                .allocateDirect(Context.PAGE_SIZE)
+    ByteBuffer anonymousPage(int size) {
+        return aligned(allocateDirect(size));
+    }
+
+    // Over allocates so the page can be aligned for long accesses
+    static ByteBuffer allocateDirect(int size) {
+        return ByteBuffer.allocateDirect(size + ALIGNMENT - 1);
+    }
+
+    static ByteBuffer aligned(ByteBuffer allocation) {
+        return allocation
+                .alignedSlice(ALIGNMENT)
                 .order(ByteOrder.nativeOrder());
     }
 
+    @Override
+    byte getByte(ByteBuffer page, int index) {
+        return page.get(index);
+    }
+
+    @Override
+    void setByte(ByteBuffer page, int index, byte value) {
+        page.put(index, value);
+    }
+
+    @Override
+    short getShort(ByteBuffer page, int index) {
+        return (short) BYTE_BUFFER_AS_SHORTS.get(page, index);
+    }
+
+    @Override
+    void setShort(ByteBuffer page, int index, short value) {
+        BYTE_BUFFER_AS_SHORTS.set(page, index, value);
+    }
+
     @Override
     int getInt(ByteBuffer page, int index) {
         return (int) BYTE_BUFFER_AS_INTS.get(page, index);
@@ -98,15 +166,179 @@ final class ByteBufferPage extends PageType<ByteBuffer> {
         BYTE_BUFFER_AS_INTS.set(page, index, value);
     }
 
+    @Override
+    long getLong(ByteBuffer page, int index) {
+        return (long) BYTE_BUFFER_AS_LONGS.get(page, index);
+    }
+
+    @Override
+    void setLong(ByteBuffer page, int index, long value) {
+        BYTE_BUFFER_AS_LONGS.set(page, index, value);
+    }
+
+    @Override
+    VarHandle intView() {
+        return BYTE_BUFFER_AS_INTS;
+    }
+
+    @Override
+    VarHandle longView() {
+        return BYTE_BUFFER_AS_LONGS;
+    }
+
+    @Override
+    void copy(ByteBuffer page, int index, PageType<Object> src, Object srcPage, int srcIndex, int length) {
+        var dest = page.duplicate();
+        dest.position(index).limit(index + length);
+        src.copyTo(srcPage, srcIndex, dest);
+    }
+
+    @Override
+    void copyTo(ByteBuffer page, int index, byte[] dest, int destOffset, int length) {
+        var src = page.duplicate();
+        src.position(index);
+        src.get(dest, destOffset, length);
+    }
+
+    @Override
+    void copyTo(ByteBuffer page, int index, ByteBuffer dest) {
+        var src = page.duplicate();
+        src.position(index).limit(index + dest.remaining());
+        dest.put(src);
+    }
+
     @Override
     public Page box(ByteBuffer page) {
         return null;
     }
 }
 
+// Slices of a FileChannel mapping, read-only mappings throw ReadOnlyBufferException on stores
+final class MappedPage extends ByteBufferPage {
+    static final PageType<ByteBuffer> TYPE = new MappedPage();
+
+    private MappedPage() {
+
+    }
+
+    @Override
+    ByteBuffer anonymousPage(int size) {
+        throw new UnsupportedOperationException("mapped pages only come from mapFile");
+    }
+}
+
+// Stands in for unmapped pages so stale accesses fail instead of touching freed memory
+final class UnmappedPage extends PageType<Object> {
+    static final PageType<Object> TYPE = new UnmappedPage();
+
+    private UnmappedPage() {
+
+    }
+
+    static IllegalStateException unmapped() {
+        return new IllegalStateException("page is not mapped");
+    }
+
+    @Override
+    Object anonymousPage(int size) {
+        throw unmapped();
+    }
+
+    @Override
+    byte getByte(Object page, int index) {
+        throw unmapped();
+    }
+
+    @Override
+    void setByte(Object page, int index, byte value) {
+        throw unmapped();
+    }
+
+    @Override
+    short getShort(Object page, int index) {
+        throw unmapped();
+    }
+
+    @Override
+    void setShort(Object page, int index, short value) {
+        throw unmapped();
+    }
+
+    @Override
+    int getInt(Object page, int index) {
+        throw unmapped();
+    }
+
+    @Override
+    void setInt(Object page, int index, int value) {
+        throw unmapped();
+    }
+
+    @Override
+    long getLong(Object page, int index) {
+        throw unmapped();
+    }
+
+    @Override
+    void setLong(Object page, int index, long value) {
+        throw unmapped();
+    }
+
+    @Override
+    VarHandle intView() {
+        throw unmapped();
+    }
+
+    @Override
+    VarHandle longView() {
+        throw unmapped();
+    }
+
+    @Override
+    void copy(Object page, int index, PageType<Object> src, Object srcPage, int srcIndex, int length) {
+        throw unmapped();
+    }
+
+    @Override
+    void copyTo(Object page, int index, byte[] dest, int destOffset, int length) {
+        throw unmapped();
+    }
+
+    @Override
+    void copyTo(Object page, int index, ByteBuffer dest) {
+        throw unmapped();
+    }
+
+    @Override
+    public Page box(Object page) {
+        throw unmapped();
+    }
+}
+
+// Slices can't be forced, so keep the whole mapping around
+final class FileMapping {
+    final long address;
+    final MappedByteBuffer buffer;
+
+    FileMapping(long address, MappedByteBuffer buffer) {
+        this.address = address;
+        this.buffer = buffer;
+    }
+
+    boolean overlaps(long start, long size) {
+        return start < address + buffer.capacity() && address < start + size;
+    }
+
+    long end() {
+        return address + buffer.capacity();
+    }
+}
+
 final class BytePage extends PageType<byte[]> {
     static final BytePage SINGLETON = new BytePage();
+    private static final VarHandle BYTES_AS_SHORTS = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.nativeOrder());
     private static final VarHandle BYTES_AS_INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle BYTES_AS_LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
     private static final int ALIGNMENT_OFFSET = ByteBuffer.wrap(new byte[0]).
             alignmentOffset(0, 8);
 
@@ -114,8 +346,28 @@ final class BytePage extends PageType<byte[]> {
     }
 
     @Override
-    byte[] anonymousPage() {
-        return new byte[ALIGNMENT_OFFSET + Context.PAGE_SIZE];
+    byte[] anonymousPage(int size) {
+        return new byte[ALIGNMENT_OFFSET + size];
+    }
+
+    @Override
+    byte getByte(byte[] page, int index) {
+        return page[ALIGNMENT_OFFSET + index];
+    }
+
+    @Override
+    void setByte(byte[] page, int index, byte value) {
+        page[ALIGNMENT_OFFSET + index] = value;
+    }
+
+    @Override
+    short getShort(byte[] page, int index) {
+        return (short) BYTES_AS_SHORTS.get(page, ALIGNMENT_OFFSET + index);
+    }
+
+    @Override
+    void setShort(byte[] page, int index, short value) {
+        BYTES_AS_SHORTS.set(page, ALIGNMENT_OFFSET + index, value);
     }
 
     @Override
@@ -128,6 +380,46 @@ final class BytePage extends PageType<byte[]> {
         BYTES_AS_INTS.set(page, ALIGNMENT_OFFSET + index, value);
     }
 
+    @Override
+    long getLong(byte[] page, int index) {
+        return (long) BYTES_AS_LONGS.get(page, ALIGNMENT_OFFSET + index);
+    }
+
+    @Override
+    void setLong(byte[] page, int index, long value) {
+        BYTES_AS_LONGS.set(page, ALIGNMENT_OFFSET + index, value);
+    }
+
+    @Override
+    VarHandle intView() {
+        return BYTES_AS_INTS;
+    }
+
+    @Override
+    VarHandle longView() {
+        return BYTES_AS_LONGS;
+    }
+
+    @Override
+    int offset(int index) {
+        return ALIGNMENT_OFFSET + index;
+    }
+
+    @Override
+    void copy(byte[] page, int index, PageType<Object> src, Object srcPage, int srcIndex, int length) {
+        src.copyTo(srcPage, srcIndex, page, ALIGNMENT_OFFSET + index, length);
+    }
+
+    @Override
+    void copyTo(byte[] page, int index, byte[] dest, int destOffset, int length) {
+        System.arraycopy(page, ALIGNMENT_OFFSET + index, dest, destOffset, length);
+    }
+
+    @Override
+    void copyTo(byte[] page, int index, ByteBuffer dest) {
+        dest.put(page, ALIGNMENT_OFFSET + index, dest.remaining());
+    }
+
     @Override
     public Page box(byte[] page) {
         return new Page() {
@@ -135,42 +427,223 @@ final class BytePage extends PageType<byte[]> {
     }
 }
 
+// Pages live in fixed size chunks which never move so appending a page
+// never copies the table. Only the directory of chunks gets copied when
+// it doubles, and the old copy keeps pointing at the same chunks.
+// Memory model: puts are serialized by the context's allocation lock and
+// readers take no lock. A reader only looks up an address it got through
+// a happens-before edge from the put of its page, so it sees the page and
+// its chunk. Grown directories are published with a release store and
+// read with an acquire load, so a reader racing a later put that grows the
+// directory still finds a fully copied one.
+final class PageTables {
+    static final int CHUNK_BITS = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    static final int INITIAL_CHUNKS = 4;
+
+    private static final VarHandle PAGES;
+    private static final VarHandle TYPES;
+
+    static {
+        var lookup = lookup();
+        try {
+            PAGES = lookup.findVarHandle(PageTables.class, "pages", Object[][].class);
+            TYPES = lookup.findVarHandle(PageTables.class, "types", PageType[][].class);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
-final class Relink extends Throwable {
-    static final Relink RELINK = new Relink();
+    private Object[][] pages = new Object[INITIAL_CHUNKS][];
+    private PageType<?>[][] types = new PageType<?>[INITIAL_CHUNKS][];
 
-    private Relink() {
-        super("", null, false, false);
+    // A page only ever sits next to its own type, so the type can take it as an Object.
+    // Ids that were never put read as unmapped and throw on access.
+    @SuppressWarnings("unchecked")
+    PageType<Object> type(int pageId) {
+        var type = typeOrNull(pageId);
+        return type != null ? (PageType<Object>) type : UnmappedPage.TYPE;
     }
-}
 
-// A bit hacky but makes publishing more convenient
-final class PageTables extends SwitchPoint {
-    final Object[] pages;
-    final PageType[] types;
+    // Handles that bind in the sole page type never see UnmappedPage, so throw here instead
+    Object page(int pageId) {
+        var chunk = pageId >>> CHUNK_BITS;
+        var pages = (Object[][]) PAGES.getAcquire(this);
+        if (chunk >= pages.length || pages[chunk] == null) {
+            throw UnmappedPage.unmapped();
+        }
+        var page = pages[chunk][pageId & CHUNK_MASK];
+        if (page == null) {
+            throw UnmappedPage.unmapped();
+        }
+        return page;
+    }
 
-    PageTables(PageType[] types, Object[] pages) {
-        this.pages = pages;
-        this.types = types;
+    // Ids that were never put have no type
+    PageType<?> typeOrNull(int pageId) {
+        var chunk = pageId >>> CHUNK_BITS;
+        var latestTypes = (PageType<?>[][]) TYPES.getAcquire(this);
+        if (chunk >= latestTypes.length || latestTypes[chunk] == null) {
+            return null;
+        }
+        return latestTypes[chunk][pageId & CHUNK_MASK];
+    }
+
+    // Callers must hold the allocation lock
+    void put(int pageId, PageType<?> type, Object page) {
+        var chunk = pageId >>> CHUNK_BITS;
+        var latestTypes = types;
+        var latestPages = pages;
+        var grown = chunk >= latestPages.length;
+        if (grown) {
+            var n = Math.max(2 * latestPages.length, chunk + 1);
+            latestTypes = Arrays.copyOf(latestTypes, n);
+            latestPages = Arrays.copyOf(latestPages, n);
+        }
+        if (latestPages[chunk] == null) {
+            latestTypes[chunk] = new PageType<?>[CHUNK_SIZE];
+            latestPages[chunk] = new Object[CHUNK_SIZE];
+        }
+        latestTypes[chunk][pageId & CHUNK_MASK] = type;
+        latestPages[chunk][pageId & CHUNK_MASK] = page;
+        if (grown) {
+            TYPES.setRelease(this, latestTypes);
+            PAGES.setRelease(this, latestPages);
+        }
     }
 }
 
 @SuppressWarnings("ALL")
 final class ContextImpl extends Context {
-    public static final MethodHandle GET_PAGE = functionalInterfaceHandle(GetPage.class);
-    static final MethodHandle GET = functionalInterfaceHandle(GetInt.class);
-    static final MethodHandle SET = functionalInterfaceHandle(SetInt.class);
+    static final MethodHandle RESOLVE_PAGE = functionalInterfaceHandle(ResolvePage.class);
+    static final MethodHandle RESOLVE_LONG_PAGE = functionalInterfaceHandle(ResolveLongPage.class);
+    static final MethodHandle RESOLVE_PAGE_TYPE = functionalInterfaceHandle(ResolvePageType.class);
+    static final MethodHandle RESOLVE_LONG_PAGE_TYPE = functionalInterfaceHandle(ResolveLongPageType.class);
+    static final MethodHandle REDUCE = functionalInterfaceHandle(Reduce.class);
+    static final MethodHandle COMBINE = functionalInterfaceHandle(Combine.class);
+    static final MethodHandle TRANSFER = functionalInterfaceHandle(Transfer.class);
+    private static final MethodHandle INDEX_OF;
+    private static final MethodHandle LONG_INDEX_OF;
+    private static final MethodHandle IS_PAGE_TYPE;
+    private static final MethodHandle IS_PAGE;
+    private static final MethodHandle IS_LONG_PAGE;
+    private static final MethodHandle CONTEXT_PAGE_TYPE;
+    private static final MethodHandle CONTEXT_LONG_PAGE_TYPE;
+    private static final MethodHandle CONTEXT_PAGE;
+    private static final MethodHandle CONTEXT_LONG_PAGE;
+    private static final MethodHandle CONTEXT_INDEX_OF;
+    private static final MethodHandle CONTEXT_LONG_INDEX_OF;
+
+    // PageType accessors keyed by primitive type, erased to (Object, int) so any page type can be bound in
+    private static final Map<Class<?>, MethodHandle> GETTERS = new HashMap<>();
+    private static final Map<Class<?>, MethodHandle> SETTERS = new HashMap<>();
+
+    // Atomic and ordered PageType accessors keyed by access mode and then by int or long
+    private static final List<String> ATOMIC_MODES = List.of(
+            "getVolatile", "setVolatile", "getAcquire", "setRelease", "getOpaque", "setOpaque",
+            "compareAndSet", "getAndAdd", "getAndSet");
+    private static final Map<String, Map<Class<?>, MethodHandle>> ATOMICS = new HashMap<>();
+
+    static {
+        var lookup = lookup();
+        try {
+            INDEX_OF = lookup.findStatic(ContextImpl.class, "indexOf", MethodType.methodType(int.class, int.class, int.class));
+            LONG_INDEX_OF = lookup.findStatic(ContextImpl.class, "indexOf", MethodType.methodType(int.class, long.class, int.class));
+            IS_PAGE_TYPE = lookup.findStatic(ContextImpl.class, "isPageType", MethodType.methodType(boolean.class, PageType.class, PageType.class));
+            IS_PAGE = lookup.findStatic(ContextImpl.class, "isPage", MethodType.methodType(boolean.class, int.class, int.class, int.class));
+            IS_LONG_PAGE = lookup.findStatic(ContextImpl.class, "isPage", MethodType.methodType(boolean.class, long.class, int.class, int.class));
+            CONTEXT_PAGE_TYPE = lookup.findStatic(ContextImpl.class, "pageTypeOf", MethodType.methodType(PageType.class, Context.class, int.class));
+            CONTEXT_LONG_PAGE_TYPE = lookup.findStatic(ContextImpl.class, "pageTypeOf", MethodType.methodType(PageType.class, Context.class, long.class));
+            CONTEXT_PAGE = lookup.findStatic(ContextImpl.class, "pageOf", MethodType.methodType(Object.class, Context.class, int.class));
+            CONTEXT_LONG_PAGE = lookup.findStatic(ContextImpl.class, "pageOf", MethodType.methodType(Object.class, Context.class, long.class));
+            CONTEXT_INDEX_OF = lookup.findStatic(ContextImpl.class, "indexOf", MethodType.methodType(int.class, Context.class, int.class));
+            CONTEXT_LONG_INDEX_OF = lookup.findStatic(ContextImpl.class, "indexOf", MethodType.methodType(int.class, Context.class, long.class));
+            for (var type : List.of(boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class)) {
+                var name = type.getName();
+                var suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                GETTERS.put(type, lookup.findVirtual(PageType.class, "get" + suffix,
+                        MethodType.methodType(type, Object.class, int.class)));
+                SETTERS.put(type, lookup.findVirtual(PageType.class, "set" + suffix,
+                        MethodType.methodType(void.class, Object.class, int.class, type)));
+            }
+            for (var mode : ATOMIC_MODES) {
+                var accessors = new HashMap<Class<?>, MethodHandle>();
+                for (var type : List.of(int.class, long.class)) {
+                    var name = type.getName();
+                    var suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                    accessors.put(type, lookup.findVirtual(PageType.class, mode + suffix, atomicType(mode, type)));
+                }
+                ATOMICS.put(mode, accessors);
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
-    private static final Object[] NO_PAGES = new Object[0];
-    private static final PageType<?>[] NO_TYPES = new PageType[0];
+    private static MethodType atomicType(String mode, Class<?> type) {
+        if (mode.equals("compareAndSet")) {
+            return MethodType.methodType(boolean.class, Object.class, int.class, type, type);
+        }
+        if (mode.startsWith("getAnd")) {
+            return MethodType.methodType(type, Object.class, int.class, type);
+        }
+        if (mode.startsWith("get")) {
+            return MethodType.methodType(type, Object.class, int.class);
+        }
+        return MethodType.methodType(void.class, Object.class, int.class, type);
+    }
+
+    // long addresses reach as many pages as an int can count
+    private static final int MAX_PAGES = Integer.MAX_VALUE;
     private static final PageType<byte[]> BYTE_PAGE = BytePage.SINGLETON;
 
-    // if we make this nonfinal we can do simple pointer check on the pages for mappings!
-    // and update mmaps with atomics!
-    private volatile PageTables pageTables;
+    private final PageTables pageTables = new PageTables();
+
+    // Appending pages leaves linked call sites valid. Only changes to the
+    // type or identity of a mapped page (unmapping, remapping) or to the set
+    // of page types in use invalidate.
+    private volatile SwitchPoint mappings = new SwitchPoint();
+
+    // The type of every page while there is only one, memory call sites then
+    // skip the page type check. Only changes along with mappings.
+    private volatile PageType<?> soleType = null;
+    private final Map<PageType<?>, Integer> pageTypeCounts = new HashMap<>();
+
+    private final Object allocationLock = new Object();
+    private int pageCount = 0;
+    // Unmapped page ids below pageCount, reused lowest first
+    private final BitSet freePageIds = new BitSet();
+    private final List<FileMapping> fileMappings = new ArrayList<>();
+    // Original allocations of EXPLICIT pages by page id, the pages themselves are aligned slices
+    private final Map<Integer, ByteBuffer> directAllocations = new HashMap<>();
+    // Written under the allocation lock, malloc and free check it without the lock
+    private volatile boolean closed = false;
+
+    private final PageBacking backing;
+
+    private final int indexBits;
+    private final int pageSize;
+    private final int indexMask;
+
+    // int addresses reach the first 4 GiB
+    private final int maxIntPages;
+
+    private final Allocator allocator;
+
+    ContextImpl(int indexBits, PageBacking backing) {
+        this.backing = backing;
+        this.indexBits = indexBits;
+        this.pageSize = 1 << indexBits;
+        this.indexMask = pageSize - 1;
+        this.maxIntPages = 1 << (Integer.SIZE - indexBits);
+        this.allocator = new Allocator(this, indexBits);
+    }
 
-    ContextImpl() {
-        pageTables = new PageTables(NO_TYPES, NO_PAGES);
+    @Override
+    public int pageShift() {
+        return indexBits;
     }
 
     static <I> MethodHandle functionalInterfaceHandle(Class<I> iface) {
@@ -196,50 +669,360 @@ final class ContextImpl extends Context {
 
     @Override
     public int anonymousPage() {
-        var latestPageTables = pageTables;
-        int n;
-        synchronized (latestPageTables) {
-            var heap = latestPageTables.pages;
-            var types = latestPageTables.types;
+        return mapAnonymousPages(1, maxIntPages) << indexBits;
+    }
+
+    @Override
+    public long anonymousLongPage() {
+        return (long) mapAnonymousPages(1, MAX_PAGES) << indexBits;
+    }
+
+    // Maps count contiguous pages below 4 GiB and returns the id of the first
+    int anonymousPages(int count) {
+        return mapAnonymousPages(count, maxIntPages);
+    }
+
+    // Must be called with the allocation lock held. Reuses the lowest run of
+    // unmapped page ids that fits before appending new ones.
+    private int reservePageIds(long count, int limit) {
+        checkOpen();
+        var start = freePageIds.nextSetBit(0);
+        while (start >= 0 && count <= limit - start) {
+            var end = freePageIds.nextClearBit(start);
+            if (end - start >= count) {
+                freePageIds.clear(start, start + (int) count);
+                return start;
+            }
+            start = freePageIds.nextSetBit(end);
+        }
+        var n = pageCount;
+        if (count > limit - n) {
+            throw new OutOfMemoryError(limit == MAX_PAGES ? "address space exhausted" : "int address space exhausted");
+        }
+        pageCount = n + (int) count;
+        return n;
+    }
+
+    @Override
+    public void freePages(long address, int count) {
+        freePageSpans(new long[]{address}, new int[]{count});
+    }
+
+    // Unmaps every span with a single invalidation. Either all of them get
+    // unmapped or, if one is bad, none of them.
+    void freePageSpans(long[] addresses, int[] counts) {
+        long total = 0;
+        for (var ii = 0; ii < addresses.length; ++ii) {
+            var address = addresses[ii];
+            var count = counts[ii];
+            if (address < 0 || (address & indexMask) != 0 || count < 0) {
+                throw new IllegalArgumentException("bad page range: 0x" + Long.toHexString(address) + " " + count);
+            }
+            total += count;
+        }
+        var allocations = new ArrayList<ByteBuffer>();
+        synchronized (allocationLock) {
+            checkOpen();
+            for (var ii = 0; ii < addresses.length; ++ii) {
+                var address = addresses[ii];
+                var count = counts[ii];
+                if (count > pageCount - (address >>> indexBits)) {
+                    throw new IllegalArgumentException("pages not mapped: 0x" + Long.toHexString(address) + " " + count);
+                }
+                var first = (int) (address >>> indexBits);
+                var alreadyFree = freePageIds.nextSetBit(first);
+                if (alreadyFree >= 0 && alreadyFree < first + count) {
+                    throw new IllegalArgumentException("pages not mapped: 0x" + Long.toHexString(address) + " " + count);
+                }
+            }
+            // Nothing to unmap, don't throw away every linked call site
+            if (total == 0) {
+                return;
+            }
+            for (var ii = 0; ii < addresses.length; ++ii) {
+                var first = (int) (addresses[ii] >>> indexBits);
+                var count = counts[ii];
+                for (var pageId = first; pageId < first + count; ++pageId) {
+                    putPage(pageId, UnmappedPage.TYPE, null);
+                    var allocation = directAllocations.remove(pageId);
+                    if (allocation != null) {
+                        allocations.add(allocation);
+                    }
+                }
+                freePageIds.set(first, first + count);
+                LinkerMetrics.INSTANCE.pagesUnmapped(count);
+            }
+            // Only forget a file mapping once all of its pages are gone
+            fileMappings.removeIf((m) -> {
+                var firstId = (int) (m.address >>> indexBits);
+                var endId = (int) (((m.end() - 1) >>> indexBits) + 1);
+                return freePageIds.nextClearBit(firstId) >= endId;
+            });
+            invalidateMappings("unmap");
+        }
+        // Only free once the pages are unmapped and linked call sites invalidated
+        for (var allocation : allocations) {
+            DirectMemory.free(allocation);
+        }
+    }
+
+    @Override
+    public void trim() {
+        allocator.trim();
+    }
+
+    void copy(int dest, int src, int length) {
+        copyBytes(indexBits, pageTables, dest, src, length);
+    }
+
+    @Override
+    public int malloc(int size) {
+        checkOpen();
+        return allocator.malloc(size);
+    }
+
+    @Override
+    public void free(int addr) {
+        checkOpen();
+        allocator.free(addr);
+    }
+
+    @Override
+    public int realloc(int addr, int size) {
+        checkOpen();
+        return allocator.realloc(addr, size);
+    }
+
+    @Override
+    public Region newRegion() {
+        return new Region(allocator, indexBits);
+    }
 
-            n = heap.length;
-            heap = Arrays.copyOf(heap, n + 1, Object[].class);
-            types = Arrays.copyOf(types, n + 1, PageType[].class);
+    // The pages are made before taking the allocation lock, so racing
+    // allocators only serialize on reserving ids and putting the pages.
+    private int mapAnonymousPages(int count, int limit) {
+        var event = new PageAllocationEvent();
+        event.begin();
 
-            PageType type;
-            if (true) {
+        PageType<?> type;
+        switch (backing) {
+            case HEAP:
                 type = BYTE_PAGE;
-            } else {
+                break;
+
+            case AUTO:
+            case EXPLICIT:
                 type = ByteBufferPage.TYPE;
+                break;
+
+            default:
+                throw new IllegalStateException(backing.toString());
+        }
+
+        var pages = new Object[count];
+        var allocations = backing == PageBacking.EXPLICIT ? new ByteBuffer[count] : null;
+        for (var ii = 0; ii < count; ++ii) {
+            if (allocations != null) {
+                allocations[ii] = ByteBufferPage.allocateDirect(pageSize);
+                pages[ii] = ByteBufferPage.aligned(allocations[ii]);
+            } else {
+                pages[ii] = type.anonymousPage(pageSize);
+            }
+        }
+
+        int n;
+        try {
+            synchronized (allocationLock) {
+                n = reservePageIds(count, limit);
+                var changed = false;
+                for (var ii = 0; ii < count; ++ii) {
+                    if (allocations != null) {
+                        directAllocations.put(n + ii, allocations[ii]);
+                    }
+                    changed |= putPage(n + ii, type, pages[ii]);
+                }
+                if (changed) {
+                    invalidateMappings("page types");
+                }
+            }
+        } catch (IllegalStateException | OutOfMemoryError e) {
+            // Closed or out of page ids
+            if (allocations != null) {
+                for (var allocation : allocations) {
+                    DirectMemory.free(allocation);
+                }
+            }
+            throw e;
+        }
+        LinkerMetrics.INSTANCE.pagesMapped(count);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.pageId = n;
+            event.pages = count;
+            event.pageType = type.getClass().getSimpleName();
+            event.commit();
+        }
+        return n;
+    }
+
+    // Must be called with the allocation lock held. Returns true if the set of
+    // page types in use changed, the caller then has to invalidate the mappings.
+    private boolean putPage(int pageId, PageType<?> type, Object page) {
+        var oldType = pageTables.typeOrNull(pageId);
+        pageTables.put(pageId, type, page);
+        if (oldType == type) {
+            return false;
+        }
+
+        var changed = pageTypeCounts.merge(type, 1, Integer::sum) == 1;
+        if (oldType != null && pageTypeCounts.merge(oldType, -1, Integer::sum) == 0) {
+            pageTypeCounts.remove(oldType);
+            changed = true;
+        }
+        if (changed) {
+            soleType = pageTypeCounts.size() == 1 ? pageTypeCounts.keySet().iterator().next() : null;
+        }
+        return changed;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("context is closed");
+        }
+    }
+
+    @Override
+    public void close() {
+        ByteBuffer[] allocations;
+        synchronized (allocationLock) {
+            if (closed) {
+                return;
             }
+            closed = true;
 
-            var page = type.anonymousPage();
+            LinkerMetrics.INSTANCE.pagesUnmapped(pageCount - freePageIds.cardinality());
+            for (var n = 0; n < pageCount; ++n) {
+                putPage(n, UnmappedPage.TYPE, null);
+            }
+            invalidateMappings("close");
 
-            types[n] = type;
-            heap[n] = page;
-            pageTables = new PageTables(types, heap);
-            SwitchPoint.invalidateAll(new SwitchPoint[]{latestPageTables});
+            fileMappings.clear();
+            allocations = directAllocations.values().toArray(new ByteBuffer[0]);
+            directAllocations.clear();
+        }
+        // Only free once the pages are unmapped and linked call sites invalidated
+        for (var allocation : allocations) {
+            DirectMemory.free(allocation);
         }
-        return n << INDEX_BITS;
     }
 
-    // Maybe add class info anyway?
     @Override
-    GuardedInvocation link(Operation operation, Object[] namespaces, Object name, MethodType methodType, Object reciever, Object... arguments) {
-        System.err.println("attempting to link " + operation + " " + name + " " + Arrays.toString(namespaces) + " " + Arrays.deepToString(arguments));
+    public long mapFile(FileChannel channel, long position, long size, FileChannel.MapMode mode) throws IOException {
+        Objects.requireNonNull(channel);
+        Objects.requireNonNull(mode);
+        if (position < 0 || size <= 0) {
+            throw new IllegalArgumentException("bad file region: " + position + " " + size);
+        }
+
+        // A single mapping can't exceed 2 GiB, split into page aligned chunks
+        long chunkSize = (Integer.MAX_VALUE >>> indexBits) << indexBits;
+
+        // Map everything before touching the page tables so a failure leaves no pages behind
+        var buffers = new ArrayList<MappedByteBuffer>();
+        for (long offset = 0; offset < size; offset += chunkSize) {
+            buffers.add(channel.map(mode, position + offset, Math.min(chunkSize, size - offset)));
+        }
+
+        long pages = ((size - 1) >>> indexBits) + 1;
+        var event = new PageAllocationEvent();
+        event.begin();
+        int n;
+        synchronized (allocationLock) {
+            n = reservePageIds(pages, MAX_PAGES);
+            int pageId = n;
+            var typesChanged = false;
+            for (var buffer : buffers) {
+                fileMappings.add(new FileMapping((long) pageId << indexBits, buffer));
+
+                int capacity = buffer.capacity();
+                for (int start = 0; start < capacity; start += pageSize) {
+                    var slice = buffer.duplicate()
+                            .position(start)
+                            .limit(Math.min(start + pageSize, capacity))
+                            .slice()
+                            .order(ByteOrder.nativeOrder());
+                    typesChanged |= putPage(pageId, MappedPage.TYPE, slice);
+                    ++pageId;
+                }
+            }
+            if (typesChanged) {
+                invalidateMappings("page types");
+            }
+            LinkerMetrics.INSTANCE.pagesMapped(pages);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.pageId = n;
+            event.pages = pages;
+            event.pageType = MappedPage.TYPE.getClass().getSimpleName();
+            event.commit();
+        }
+        return (long) n << indexBits;
+    }
+
+    @Override
+    public void force(long address, long size) {
+        FileMapping[] snapshot;
+        synchronized (allocationLock) {
+            snapshot = fileMappings.toArray(new FileMapping[0]);
+        }
+        for (var mapping : snapshot) {
+            if (mapping.overlaps(address, size) && !mapping.buffer.isReadOnly()) {
+                mapping.buffer.force();
+            }
+        }
+    }
+
+    // Must be called with the allocation lock held after changing existing mappings
+    void invalidateMappings(String reason) {
+        var event = new MappingInvalidationEvent();
+        event.begin();
+
+        var old = mappings;
+        mappings = new SwitchPoint();
+        SwitchPoint.invalidateAll(new SwitchPoint[]{old});
+        LinkerMetrics.INSTANCE.invalidated();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.reason = reason;
+            event.commit();
+        }
+    }
 
+    // Maybe add class info anyway?
+    @Override
+    GuardedInvocation link(Operation operation, Object[] namespaces, Object name, Object[] staticArguments, CallSiteProfile profile, MethodType methodType, Object reciever, Object... arguments) {
         String instruction;
+        StandardNamespace namespace;
         if (Objects.equals(StandardOperation.GET, operation)) {
             instruction = "get";
+            namespace = StandardNamespace.ELEMENT;
         } else if (Objects.equals(StandardOperation.SET, operation)) {
             instruction = "set";
+            namespace = StandardNamespace.ELEMENT;
+        } else if (Objects.equals(StandardOperation.CALL, operation)) {
+            instruction = "call";
+            namespace = StandardNamespace.METHOD;
         } else {
             return null;
         }
 
         if (!Arrays
                 .stream(namespaces)
-                .anyMatch((n) -> n.equals(StandardNamespace.ELEMENT))) {
+                .anyMatch((n) -> n.equals(namespace))) {
             return null;
         }
 
@@ -247,111 +1030,734 @@ final class ContextImpl extends Context {
             return null;
         }
         String nameS = (String) name;
+
+        // Read the switch point first so a racing invalidation can only make this linkage stale
+        var switchPoint = mappings;
+        var tables = pageTables;
+        var soleType = this.soleType;
         switch (nameS) {
             default:
                 return null;
 
             case "memory": {
-                var latestPageTables = pageTables;
                 MethodHandle result;
                 switch (instruction) {
                     default:
-                        throw new UnsupportedOperationException(instruction);
+                        return null;
                     case "get":
-                        return linkGetMemoryElement(methodType, latestPageTables, arguments);
+                        return linkMemoryElement(false, methodType, tables, switchPoint, soleType, profile, arguments);
                     case "set":
-                        return linkSetMemoryElement(methodType, latestPageTables, arguments);
+                        return linkMemoryElement(true, methodType, tables, switchPoint, soleType, profile, arguments);
+                }
+            }
+
+            case "copy": {
+                if (!instruction.equals("call")) {
+                    return null;
+                }
+                var length = bytesArgument(staticArguments);
+                if (length < 0) {
+                    return null;
+                }
+                return linkCopy(methodType, tables, switchPoint, length);
+            }
+
+            case "gather":
+            case "scatter": {
+                if (!instruction.equals("call")) {
+                    return null;
+                }
+                var stride = strideArgument(staticArguments);
+                if (stride <= 0) {
+                    return null;
+                }
+                var count = intsArgument(staticArguments, 3);
+                if (count < 0) {
+                    return null;
+                }
+                switch (nameS) {
+                    default:
+                        throw new UnsupportedOperationException(nameS);
+                    case "gather":
+                        return linkGather(methodType, tables, switchPoint, count, stride);
+                    case "scatter":
+                        return linkScatter(methodType, tables, switchPoint, count, stride);
+                }
+            }
+
+            case "getVolatile":
+            case "setVolatile":
+            case "getAcquire":
+            case "setRelease":
+            case "getOpaque":
+            case "setOpaque":
+            case "compareAndSet":
+            case "getAndAdd":
+            case "getAndSet": {
+                if (!instruction.equals("call")) {
+                    return null;
+                }
+                return linkAtomic(nameS, methodType, tables, switchPoint, soleType, profile, staticArguments, arguments);
+            }
+
+            case "sum":
+            case "dot":
+            case "mul": {
+                if (!instruction.equals("call")) {
+                    return null;
+                }
+                var count = intsArgument(staticArguments, 2);
+                if (count < 0) {
+                    return null;
+                }
+                switch (nameS) {
+                    default:
+                        throw new UnsupportedOperationException(nameS);
+                    case "sum":
+                        return linkSum(methodType, tables, switchPoint, count);
+                    case "dot":
+                        return linkDot(methodType, tables, switchPoint, count);
+                    case "mul":
+                        return linkMul(methodType, tables, switchPoint, count);
                 }
             }
         }
     }
 
-    private GuardedInvocation linkGetPage(MethodType methodType, PageTables latestPageTables, Object... arguments) {
-        if (!methodType.equals(MethodType.methodType(Page.class, Context.class, int.class))) {
+    // The indify plugin passes T as a type descriptor followed by N
+    private static int intsArgument(Object[] staticArguments, int length) {
+        if (staticArguments.length != length) {
+            return -1;
+        }
+        if (typeArgument(staticArguments[0]) != int.class) {
+            return -1;
+        }
+        if (!(staticArguments[1] instanceof Integer)) {
+            return -1;
+        }
+        var count = (int) staticArguments[1];
+        if (count < 0 || count > Integer.MAX_VALUE / Integer.BYTES) {
+            return -1;
+        }
+        return count;
+    }
+
+    // The size in bytes of N elements of T
+    private static int bytesArgument(Object[] staticArguments) {
+        if (staticArguments.length != 2) {
+            return -1;
+        }
+        var type = typeArgument(staticArguments[0]);
+        if (type == null || !type.isPrimitive() || type == void.class) {
+            return -1;
+        }
+        if (!(staticArguments[1] instanceof Integer)) {
+            return -1;
+        }
+        var count = (int) staticArguments[1];
+        var size = sizeOf(type);
+        if (count < 0 || count > Integer.MAX_VALUE / size) {
+            return -1;
+        }
+        return count * size;
+    }
+
+    static int sizeOf(Class<?> type) {
+        if (type == boolean.class || type == byte.class) {
+            return Byte.BYTES;
+        }
+        if (type == char.class || type == short.class) {
+            return Short.BYTES;
+        }
+        if (type == int.class || type == float.class) {
+            return Integer.BYTES;
+        }
+        if (type == long.class || type == double.class) {
+            return Long.BYTES;
+        }
+        throw new IllegalArgumentException(type.toString());
+    }
+
+    // Stride follows T and N and is counted in elements
+    private static int strideArgument(Object[] staticArguments) {
+        if (staticArguments.length != 3) {
+            return -1;
+        }
+        if (!(staticArguments[2] instanceof Integer)) {
+            return -1;
+        }
+        var stride = (int) staticArguments[2];
+        if (stride <= 0 || stride > Integer.MAX_VALUE / Integer.BYTES) {
+            return -1;
+        }
+        return stride;
+    }
+
+    static Class<?> typeArgument(Object argument) {
+        if (argument instanceof Class) {
+            return (Class<?>) argument;
+        }
+        if (!(argument instanceof String)) {
             return null;
         }
-        var pageTypes = latestPageTables.types;
-        var pages = latestPageTables.pages;
+        switch ((String) argument) {
+            default:
+                return null;
+            case "Z":
+                return boolean.class;
+            case "B":
+                return byte.class;
+            case "C":
+                return char.class;
+            case "S":
+                return short.class;
+            case "I":
+                return int.class;
+            case "J":
+                return long.class;
+            case "F":
+                return float.class;
+            case "D":
+                return double.class;
+        }
+    }
+
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    // Where byte ii of a native order int goes
+    private static int byteShift(int ii) {
+        return Byte.SIZE * (LITTLE_ENDIAN ? ii : Integer.BYTES - 1 - ii);
+    }
+
+    // An int straddling two pages is put together from its bytes on both
+    private static int getIntSlow(int indexBits, PageTables tables, int addr) {
+        var indexMask = (1 << indexBits) - 1;
+        var pageId = addr >>> indexBits;
+        var index = addr & indexMask;
+        if (index <= indexMask + 1 - Integer.BYTES) {
+            return tables.type(pageId).getInt(tables.page(pageId), index);
+        }
+        var value = 0;
+        for (var ii = 0; ii < Integer.BYTES; ++ii) {
+            var byteAddr = addr + ii;
+            var bytePageId = byteAddr >>> indexBits;
+            var b = tables.type(bytePageId).getByte(tables.page(bytePageId), byteAddr & indexMask);
+            value |= (b & 0xFF) << byteShift(ii);
+        }
+        return value;
+    }
 
-        var firstContext = (Context) arguments[0];
-        var firstAddr = (int) arguments[1];
+    private static void setIntSlow(int indexBits, PageTables tables, int addr, int value) {
+        var indexMask = (1 << indexBits) - 1;
+        var pageId = addr >>> indexBits;
+        var index = addr & indexMask;
+        if (index <= indexMask + 1 - Integer.BYTES) {
+            tables.type(pageId).setInt(tables.page(pageId), index, value);
+            return;
+        }
+        for (var ii = 0; ii < Integer.BYTES; ++ii) {
+            var byteAddr = addr + ii;
+            var bytePageId = byteAddr >>> indexBits;
+            tables.type(bytePageId).setByte(tables.page(bytePageId), byteAddr & indexMask, (byte) (value >>> byteShift(ii)));
+        }
+    }
 
-        var firstPageId = firstAddr >>> INDEX_BITS;
+    // Like memcpy the result is unspecified if the two ranges overlap
+    private static void copyBytes(int indexBits, PageTables tables, int dest, int src, int length) {
+        var pageSize = 1 << indexBits;
+        var indexMask = pageSize - 1;
+        var ii = 0;
+        while (ii < length) {
+            var destAddr = dest + ii;
+            var srcAddr = src + ii;
+            var destPageId = destAddr >>> indexBits;
+            var destIndex = destAddr & indexMask;
+            var srcPageId = srcAddr >>> indexBits;
+            var srcIndex = srcAddr & indexMask;
+
+            var run = Math.min(length - ii, pageSize - Math.max(destIndex, srcIndex));
+            tables.type(destPageId).copy(tables.page(destPageId), destIndex,
+                    tables.type(srcPageId), tables.page(srcPageId), srcIndex, run);
+            ii += run;
+        }
+    }
 
-        var firstPageType = pageTypes[firstPageId];
+    private GuardedInvocation linkCopy(MethodType methodType, PageTables tables, SwitchPoint switchPoint, int length) {
+        if (!methodType.equals(MethodType.methodType(void.class, Context.class, int.class, int.class))) {
+            return null;
+        }
+        // Copied into locals so the page geometry is a constant of the linked handle
+        var indexBits = this.indexBits;
 
-        // page id isn't always constant though...
-        var result = GetPage.toHandle((context, pageId) -> {
-            var pageType = pageTypes[pageId];
-            if (firstPageType != pageType) {
-                throw Relink.RELINK;
-            }
-            var page = pages[pageId];
-            return firstPageType.box(page);
+        var result = Transfer.toHandle((context, dest, src) -> {
+            copyBytes(indexBits, tables, dest, src, length);
         });
 
         return new GuardedInvocation(result,
                 Guards.asType(Guards.getIdentityGuard(this), methodType),
-                latestPageTables, Relink.class);
+                switchPoint);
     }
 
-    private GuardedInvocation linkGetMemoryElement(MethodType methodType, PageTables latestPageTables, Object... arguments) {
-        if (!methodType.equals(MethodType.methodType(int.class, Context.class, int.class))) {
-            return null;
+    // How many ints spaced step bytes apart starting at index still lie inside the page
+    private static int intsLeftInPage(int pageSize, int index, int step) {
+        if (index > pageSize - Integer.BYTES) {
+            return 0;
         }
-        var pageTypes = latestPageTables.types;
-        var pages = latestPageTables.pages;
+        return (pageSize - Integer.BYTES - index) / step + 1;
+    }
 
-        var firstContext = (Context) arguments[0];
-        var firstAddr = (int) arguments[1];
+    private static void gatherInts(int indexBits, PageTables tables, int dest, int src, int stride, int count) {
+        var pageSize = 1 << indexBits;
+        var indexMask = pageSize - 1;
+        var ii = 0;
+        while (ii < count) {
+            var destAddr = dest + Integer.BYTES * ii;
+            var srcAddr = src + stride * ii;
+            var destPageId = destAddr >>> indexBits;
+            var destIndex = destAddr & indexMask;
+            var srcPageId = srcAddr >>> indexBits;
+            var srcIndex = srcAddr & indexMask;
+
+            var run = Math.min(count - ii,
+                    Math.min(intsLeftInPage(pageSize, destIndex, Integer.BYTES), intsLeftInPage(pageSize, srcIndex, stride)));
+            if (run <= 0) {
+                // an int straddles a page boundary
+                setIntSlow(indexBits, tables, destAddr, getIntSlow(indexBits, tables, srcAddr));
+                ++ii;
+                continue;
+            }
+            tables.type(destPageId).gatherInts(tables.page(destPageId), destIndex,
+                    tables.type(srcPageId), tables.page(srcPageId), srcIndex, stride, run);
+            ii += run;
+        }
+    }
 
-        var firstPageId = firstAddr >>> INDEX_BITS;
+    private static void scatterInts(int indexBits, PageTables tables, int dest, int src, int stride, int count) {
+        var pageSize = 1 << indexBits;
+        var indexMask = pageSize - 1;
+        var ii = 0;
+        while (ii < count) {
+            var destAddr = dest + stride * ii;
+            var srcAddr = src + Integer.BYTES * ii;
+            var destPageId = destAddr >>> indexBits;
+            var destIndex = destAddr & indexMask;
+            var srcPageId = srcAddr >>> indexBits;
+            var srcIndex = srcAddr & indexMask;
+
+            var run = Math.min(count - ii,
+                    Math.min(intsLeftInPage(pageSize, destIndex, stride), intsLeftInPage(pageSize, srcIndex, Integer.BYTES)));
+            if (run <= 0) {
+                // an int straddles a page boundary
+                setIntSlow(indexBits, tables, destAddr, getIntSlow(indexBits, tables, srcAddr));
+                ++ii;
+                continue;
+            }
+            tables.type(destPageId).scatterInts(tables.page(destPageId), destIndex, stride,
+                    tables.type(srcPageId), tables.page(srcPageId), srcIndex, run);
+            ii += run;
+        }
+    }
 
-        var firstPageType = pageTypes[firstPageId];
+    private GuardedInvocation linkGather(MethodType methodType, PageTables tables, SwitchPoint switchPoint, int count, int stride) {
+        if (!methodType.equals(MethodType.methodType(void.class, Context.class, int.class, int.class))) {
+            return null;
+        }
+        var indexBits = this.indexBits;
+        var strideBytes = Integer.BYTES * stride;
 
-        var result = GetInt.toHandle((context, addr) -> {
-            var pageId = addr >>> Context.INDEX_BITS;
-            var index = addr & Context.INDEX_MASK;
-            var pageType = pageTypes[pageId];
-            if (firstPageType != pageType) {
-                throw Relink.RELINK;
-            }
-            var page = pages[pageId];
-            return firstPageType.getInt(page, index);
+        // stride is a constant of the call site so each site gets its own specialized loop
+        var result = Transfer.toHandle((context, dest, src) -> {
+            gatherInts(indexBits, tables, dest, src, strideBytes, count);
         });
 
         return new GuardedInvocation(result,
                 Guards.asType(Guards.getIdentityGuard(this), methodType),
-                latestPageTables, Relink.class);
+                switchPoint);
     }
 
-    private GuardedInvocation linkSetMemoryElement(MethodType methodType, PageTables latestPageTables, Object... arguments) {
+    private GuardedInvocation linkScatter(MethodType methodType, PageTables tables, SwitchPoint switchPoint, int count, int stride) {
         if (!methodType.equals(MethodType.methodType(void.class, Context.class, int.class, int.class))) {
             return null;
         }
+        var indexBits = this.indexBits;
+        var strideBytes = Integer.BYTES * stride;
+
+        var result = Transfer.toHandle((context, dest, src) -> {
+            scatterInts(indexBits, tables, dest, src, strideBytes, count);
+        });
+
+        return new GuardedInvocation(result,
+                Guards.asType(Guards.getIdentityGuard(this), methodType),
+                switchPoint);
+    }
 
-        var pageTypes = latestPageTables.types;
-        var pages = latestPageTables.pages;
+    private GuardedInvocation linkSum(MethodType methodType, PageTables tables, SwitchPoint switchPoint, int count) {
+        if (!methodType.equals(MethodType.methodType(int.class, Context.class, int.class))) {
+            return null;
+        }
+        var indexBits = this.indexBits;
+        var pageSize = this.pageSize;
+        var indexMask = this.indexMask;
+        var size = Integer.BYTES * count;
+
+        // Bulk operations dispatch on the page type once per call so there is no need to relink
+        var result = Reduce.toHandle((context, addr) -> {
+            var pageId = addr >>> indexBits;
+            var index = addr & indexMask;
+            // Not index + size <= pageSize which overflows for large N
+            if (size <= pageSize - index) {
+                return tables.type(pageId).sumInts(tables.page(pageId), index, count);
+            }
+            var sum = 0;
+            for (var ii = 0; ii < count; ++ii) {
+                sum += getIntSlow(indexBits, tables, addr + Integer.BYTES * ii);
+            }
+            return sum;
+        });
 
-        var firstContext = (Context) arguments[0];
-        var firstAddr = (int) arguments[1];
+        return new GuardedInvocation(result,
+                Guards.asType(Guards.getIdentityGuard(this), methodType),
+                switchPoint);
+    }
 
-        var firstPageId = firstAddr >>> INDEX_BITS;
+    private GuardedInvocation linkDot(MethodType methodType, PageTables tables, SwitchPoint switchPoint, int count) {
+        if (!methodType.equals(MethodType.methodType(int.class, Context.class, int.class, int.class))) {
+            return null;
+        }
+        var indexBits = this.indexBits;
+        var pageSize = this.pageSize;
+        var indexMask = this.indexMask;
+        var size = Integer.BYTES * count;
+
+        var result = Combine.toHandle((context, left, right) -> {
+            var leftPageId = left >>> indexBits;
+            var leftIndex = left & indexMask;
+            var rightPageId = right >>> indexBits;
+            var rightIndex = right & indexMask;
+            if (size <= pageSize - leftIndex && size <= pageSize - rightIndex) {
+                return tables.type(leftPageId).dotInts(tables.page(leftPageId), leftIndex,
+                        tables.type(rightPageId), tables.page(rightPageId), rightIndex, count);
+            }
+            var sum = 0;
+            for (var ii = 0; ii < count; ++ii) {
+                var offset = Integer.BYTES * ii;
+                sum += getIntSlow(indexBits, tables, left + offset) * getIntSlow(indexBits, tables, right + offset);
+            }
+            return sum;
+        });
 
-        var firstPageType = pageTypes[firstPageId];
+        return new GuardedInvocation(result,
+                Guards.asType(Guards.getIdentityGuard(this), methodType),
+                switchPoint);
+    }
 
-        var result = SetInt.toHandle((context, addr, value) -> {
-            var pageId = addr >>> Context.INDEX_BITS;
-            var index = addr & Context.INDEX_MASK;
-            var pageType = pageTypes[pageId];
-            if (firstPageType != pageType) {
-                throw Relink.RELINK;
+    private GuardedInvocation linkMul(MethodType methodType, PageTables tables, SwitchPoint switchPoint, int count) {
+        if (!methodType.equals(MethodType.methodType(void.class, Context.class, int.class, int.class))) {
+            return null;
+        }
+        var indexBits = this.indexBits;
+        var pageSize = this.pageSize;
+        var indexMask = this.indexMask;
+        var size = Integer.BYTES * count;
+
+        var result = Transfer.toHandle((context, accum, src) -> {
+            var accumPageId = accum >>> indexBits;
+            var accumIndex = accum & indexMask;
+            var srcPageId = src >>> indexBits;
+            var srcIndex = src & indexMask;
+            if (size <= pageSize - accumIndex && size <= pageSize - srcIndex) {
+                tables.type(accumPageId).mulInts(tables.page(accumPageId), accumIndex,
+                        tables.type(srcPageId), tables.page(srcPageId), srcIndex, count);
+                return;
+            }
+            for (var ii = 0; ii < count; ++ii) {
+                var offset = Integer.BYTES * ii;
+                setIntSlow(indexBits, tables, accum + offset,
+                        getIntSlow(indexBits, tables, accum + offset) * getIntSlow(indexBits, tables, src + offset));
             }
-            var page = pages[pageId];
-            firstPageType.setInt(page, index, value);
         });
+
         return new GuardedInvocation(result,
                 Guards.asType(Guards.getIdentityGuard(this), methodType),
-                latestPageTables, Relink.class);
+                switchPoint);
+    }
+
+    @SuppressWarnings("unused")
+    private static int indexOf(int addr, int indexMask) {
+        return addr & indexMask;
+    }
+
+    @SuppressWarnings("unused")
+    private static int indexOf(long addr, int indexMask) {
+        return (int) addr & indexMask;
+    }
+
+    // Addresses are unsigned and either an int or a long
+    private int pageIdOf(Object addr) {
+        if (addr instanceof Integer) {
+            return (int) addr >>> indexBits;
+        }
+        return Math.toIntExact((long) addr >>> indexBits);
+    }
+
+    private static boolean isAddress(Class<?> type) {
+        return type == int.class || type == long.class;
+    }
+
+    private static MethodHandle resolveAddress(int indexBits, PageTables tables, MethodType methodType) {
+        if (methodType.parameterType(1) == long.class) {
+            return ResolveLongPage.toHandle((addr) -> tables.page(Math.toIntExact(addr >>> indexBits)));
+        }
+        return ResolvePage.toHandle((addr) -> tables.page(addr >>> indexBits));
+    }
+
+    private static MethodHandle resolveAddressType(int indexBits, PageTables tables, MethodType methodType) {
+        if (methodType.parameterType(1) == long.class) {
+            // Addresses past the last page id must not wrap around to a live page
+            return ResolveLongPageType.toHandle((addr) -> tables.type(Math.toIntExact(addr >>> indexBits)));
+        }
+        return ResolvePageType.toHandle((addr) -> tables.type(addr >>> indexBits));
+    }
+
+    private static boolean isPageType(PageType<?> expected, PageType<?> actual) {
+        return expected == actual;
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean isPage(int addr, int indexBits, int pageId) {
+        return addr >>> indexBits == pageId;
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean isPage(long addr, int indexBits, int pageId) {
+        return addr >>> indexBits == pageId;
+    }
+
+    // (Context, addr) passes while the address is in the page
+    private MethodHandle constantPageGuard(MethodType methodType, int pageId) {
+        var addressType = methodType.parameterType(1);
+        var isPage = MethodHandles.insertArguments(addressType == long.class ? IS_LONG_PAGE : IS_PAGE, 1, indexBits, pageId);
+        var guard = MethodHandles.guardWithTest(
+                Guards.asType(Guards.getIdentityGuard(this), MethodType.methodType(boolean.class, Context.class)),
+                MethodHandles.dropArguments(isPage, 0, Context.class),
+                MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, Context.class, addressType));
+        return Guards.asType(guard, methodType);
+    }
+
+    // While a call site keeps touching the one page, the page and its type are
+    // bound in as constants and only the page id is checked. Another page fails
+    // the guard and the relink goes through the general path for good.
+    // Unmapping or remapping the page invalidates the switch point.
+    private GuardedInvocation linkConstantPage(MethodType methodType, SwitchPoint switchPoint, MethodHandle accessor, int pageId, Object page) {
+        var indexOf = MethodHandles.insertArguments(
+                methodType.parameterType(1) == long.class ? LONG_INDEX_OF : INDEX_OF, 1, indexMask);
+        var result = MethodHandles.filterArguments(MethodHandles.insertArguments(accessor, 0, page), 0, indexOf);
+        result = MethodHandles.dropArguments(result, 0, Context.class);
+        return new GuardedInvocation(result.asType(methodType), constantPageGuard(methodType, pageId), switchPoint);
+    }
+
+    // Dispatches on the page types the call site has seen. The guard from
+    // isSeenPageType already ruled out every other type, so the last one needs
+    // no test. Without types the site has gone megamorphic and the accessor
+    // dispatches virtually instead.
+    private static MethodHandle dispatchPageType(MethodHandle accessor, PageType<?>[] types) {
+        if (types == null) {
+            return accessor;
+        }
+        var last = types.length - 1;
+        var result = MethodHandles.dropArguments(accessor.bindTo(types[last]), 0, PageType.class);
+        for (var ii = last - 1; ii >= 0; --ii) {
+            var type = types[ii];
+            var test = MethodHandles.insertArguments(IS_PAGE_TYPE, 0, type);
+            var path = MethodHandles.dropArguments(accessor.bindTo(type), 0, PageType.class);
+            result = MethodHandles.guardWithTest(test, path, result);
+        }
+        return result;
+    }
+
+    // (Context, addr, ...) passes while the address is in a page of one of the
+    // types. A page of another type fails the guard and relinks to add it.
+    private static MethodHandle isSeenPageType(int indexBits, PageTables tables, PageType<?>[] types, MethodType methodType) {
+        var no = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, PageType.class);
+        var yes = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, PageType.class);
+        var test = no;
+        for (var ii = types.length - 1; ii >= 0; --ii) {
+            test = MethodHandles.guardWithTest(MethodHandles.insertArguments(IS_PAGE_TYPE, 0, types[ii]), yes, test);
+        }
+        test = MethodHandles.filterArguments(test, 0, resolveAddressType(indexBits, tables, methodType));
+        test = MethodHandles.dropArguments(test, 0, Context.class);
+        return MethodHandles.dropArguments(test, 2, methodType.parameterList().subList(2, methodType.parameterCount()));
+    }
+
+    // (Context, addr, ...) is spread out to (page, index, ...) for the accessor.
+    // Only valid while every page has the type the accessor is bound to.
+    private static MethodHandle spreadAddress(int indexBits, PageTables tables, MethodHandle accessor, MethodType methodType) {
+        var indexOf = MethodHandles.insertArguments(
+                methodType.parameterType(1) == long.class ? LONG_INDEX_OF : INDEX_OF, 1, (1 << indexBits) - 1);
+        var handle = MethodHandles.filterArguments(accessor, 0,
+                resolveAddress(indexBits, tables, methodType),
+                indexOf);
+        var reorder = new int[handle.type().parameterCount()];
+        reorder[0] = 1;
+        for (var ii = 1; ii < reorder.length; ++ii) {
+            reorder[ii] = ii;
+        }
+        return MethodHandles.permuteArguments(handle, methodType, reorder);
+    }
+
+    @SuppressWarnings("unused")
+    private static PageType<?> pageTypeOf(Context context, int addr) {
+        var impl = (ContextImpl) context;
+        return impl.pageTables.type(addr >>> impl.indexBits);
+    }
+
+    @SuppressWarnings("unused")
+    private static PageType<?> pageTypeOf(Context context, long addr) {
+        var impl = (ContextImpl) context;
+        return impl.pageTables.type(Math.toIntExact(addr >>> impl.indexBits));
+    }
+
+    @SuppressWarnings("unused")
+    private static Object pageOf(Context context, int addr) {
+        var impl = (ContextImpl) context;
+        return impl.pageTables.page(addr >>> impl.indexBits);
+    }
+
+    @SuppressWarnings("unused")
+    private static Object pageOf(Context context, long addr) {
+        var impl = (ContextImpl) context;
+        return impl.pageTables.page(Math.toIntExact(addr >>> impl.indexBits));
+    }
+
+    @SuppressWarnings("unused")
+    private static int indexOf(Context context, int addr) {
+        return addr & ((ContextImpl) context).indexMask;
+    }
+
+    @SuppressWarnings("unused")
+    private static int indexOf(Context context, long addr) {
+        return (int) addr & ((ContextImpl) context).indexMask;
+    }
+
+    // (Context, addr, ...) is spread out to (pageType, page, index, ...) looked
+    // up in whichever context gets passed, so it needs no guard or switch point
+    private static MethodHandle spreadContextAddress(MethodHandle accessor, MethodType methodType) {
+        var isLong = methodType.parameterType(1) == long.class;
+        var handle = MethodHandles.collectArguments(accessor, 0, isLong ? CONTEXT_LONG_PAGE_TYPE : CONTEXT_PAGE_TYPE);
+        handle = MethodHandles.collectArguments(handle, 2, isLong ? CONTEXT_LONG_PAGE : CONTEXT_PAGE);
+        handle = MethodHandles.collectArguments(handle, 4, isLong ? CONTEXT_LONG_INDEX_OF : CONTEXT_INDEX_OF);
+        var reorder = new int[handle.type().parameterCount()];
+        for (var ii = 0; ii < 6; ++ii) {
+            reorder[ii] = ii % 2;
+        }
+        for (var ii = 6; ii < reorder.length; ++ii) {
+            reorder[ii] = ii - 4;
+        }
+        return MethodHandles.permuteArguments(handle, methodType, reorder);
+    }
+
+    // (Context, addr, ...) is spread out to (pageType, page, index, ...) for the accessor
+    private static MethodHandle spreadTypedAddress(int indexBits, PageTables tables, MethodHandle accessor, MethodType methodType) {
+        var indexOf = MethodHandles.insertArguments(
+                methodType.parameterType(1) == long.class ? LONG_INDEX_OF : INDEX_OF, 1, (1 << indexBits) - 1);
+        var handle = MethodHandles.filterArguments(accessor, 0,
+                resolveAddressType(indexBits, tables, methodType),
+                resolveAddress(indexBits, tables, methodType),
+                indexOf);
+        var reorder = new int[handle.type().parameterCount()];
+        reorder[0] = 1;
+        reorder[1] = 1;
+        reorder[2] = 1;
+        for (var ii = 3; ii < reorder.length; ++ii) {
+            reorder[ii] = ii - 1;
+        }
+        return MethodHandles.permuteArguments(handle, methodType, reorder);
+    }
+
+    // Links (Context, addr, ...) to an accessor taking (pageType, page, index, ...)
+    private GuardedInvocation linkAccessor(MethodType methodType, PageTables tables, SwitchPoint switchPoint, PageType<?> soleType, CallSiteProfile profile, MethodHandle accessor, Object... arguments) {
+        if (profile.isUnstable()) {
+            return new GuardedInvocation(spreadContextAddress(accessor, methodType));
+        }
+
+        var firstPageId = pageIdOf(arguments[1]);
+        var firstPageType = tables.typeOrNull(firstPageId);
+        if (firstPageType != null && profile.recordPage(this, firstPageId)) {
+            return linkConstantPage(methodType, switchPoint, accessor.bindTo(firstPageType), firstPageId, tables.page(firstPageId));
+        }
+
+        MethodHandle result;
+        var guard = Guards.asType(Guards.getIdentityGuard(this), methodType);
+        if (soleType != null) {
+            result = spreadAddress(indexBits, tables, accessor.bindTo(soleType), methodType);
+        } else {
+            var types = profile.recordType(tables.type(firstPageId));
+            result = spreadTypedAddress(indexBits, tables, dispatchPageType(accessor, types), methodType);
+            if (types != null) {
+                guard = MethodHandles.guardWithTest(guard,
+                        isSeenPageType(indexBits, tables, types, methodType),
+                        MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, methodType.parameterList()));
+            }
+        }
+
+        return new GuardedInvocation(result, guard, switchPoint);
+    }
+
+    // The PageType accessor for a memory get (Context, addr)T or set (Context, addr, T)void
+    static MethodHandle memoryAccessor(boolean store, MethodType methodType) {
+        if (methodType.parameterCount() != (store ? 3 : 2)
+                || methodType.parameterType(0) != Context.class
+                || !isAddress(methodType.parameterType(1))) {
+            return null;
+        }
+        if (!store) {
+            return GETTERS.get(methodType.returnType());
+        }
+        if (methodType.returnType() != void.class) {
+            return null;
+        }
+        return SETTERS.get(methodType.parameterType(2));
+    }
+
+    private GuardedInvocation linkMemoryElement(boolean store, MethodType methodType, PageTables tables, SwitchPoint switchPoint, PageType<?> soleType, CallSiteProfile profile, Object... arguments) {
+        var accessor = memoryAccessor(store, methodType);
+        if (accessor == null) {
+            return null;
+        }
+        return linkAccessor(methodType, tables, switchPoint, soleType, profile, accessor, arguments);
+    }
+
+    @Override
+    GuardedInvocation linkMemory(boolean store, CallSiteProfile profile, MethodType methodType, Object... arguments) {
+        // Read the switch point first so a racing invalidation can only make this linkage stale
+        var switchPoint = mappings;
+        var tables = pageTables;
+        var soleType = this.soleType;
+        return linkMemoryElement(store, methodType, tables, switchPoint, soleType, profile, arguments);
+    }
+
+    // Atomic and ordered accesses of T through the VarHandle access mode of the same name
+    private GuardedInvocation linkAtomic(String mode, MethodType methodType, PageTables tables, SwitchPoint switchPoint, PageType<?> soleType, CallSiteProfile profile, Object[] staticArguments, Object... arguments) {
+        if (methodType.parameterCount() < 2
+                || methodType.parameterType(0) != Context.class
+                || !isAddress(methodType.parameterType(1))) {
+            return null;
+        }
+        if (staticArguments.length != 1) {
+            return null;
+        }
+        var type = typeArgument(staticArguments[0]);
+        if (type == null) {
+            return null;
+        }
+        var accessor = ATOMICS.get(mode).get(type);
+        if (accessor == null) {
+            return null;
+        }
+        // (pageType, page, index, ...) against (Context, addr, ...)
+        if (!accessor.type().dropParameterTypes(0, 3).equals(methodType.dropParameterTypes(0, 2))) {
+            return null;
+        }
+        return linkAccessor(methodType, tables, switchPoint, soleType, profile, accessor, arguments);
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import sun.misc.Unsafe;
+
+import java.nio.ByteBuffer;
+
+// Frees direct buffers without waiting on the GC.
+// Java 11 has no supported way to do that, so this is the runtime's one use
+// of an internal API: sun.misc.Unsafe.invokeCleaner from jdk.unsupported,
+// see module-info.java. javac warns about it, keep any other use in here.
+final class DirectMemory {
+    private static final Unsafe UNSAFE;
+
+    static {
+        try {
+            var field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private DirectMemory() {
+
+    }
+
+    // buffer must be the original allocation and not a slice of it
+    static void free(ByteBuffer buffer) {
+        UNSAFE.invokeCleaner(buffer);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.sstewartgallus.peacod.Link")
+@Label("Link")
+@Category({"Peacod", "Linker"})
+@Description("A call site asked the linker for a new target")
+final class LinkEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Method Type")
+    String methodType;
+
+    @Label("Linked")
+    boolean linked;
+
+    @Label("Links At Call Site")
+    int links;
+}
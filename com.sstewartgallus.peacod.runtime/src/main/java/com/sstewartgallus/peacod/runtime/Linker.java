@@ -15,7 +15,12 @@ class Linker implements TypeBasedGuardingDynamicLinker {
     @Override
     public GuardedInvocation getGuardedInvocation(LinkRequest linkRequest, LinkerServices linkerServices) {
         var receiver = (Context) linkRequest.getReceiver();
+        var event = new LinkEvent();
+        event.begin();
+
         var callSiteDescriptor = linkRequest.getCallSiteDescriptor();
+        var links = LinkerMetrics.INSTANCE.linkAttempt(callSiteDescriptor);
+
         var op = callSiteDescriptor.getOperation();
 
         Object name = null;
@@ -30,10 +35,28 @@ class Linker implements TypeBasedGuardingDynamicLinker {
             op = ((NamespaceOperation) op).getBaseOperation();
         }
 
+        var staticArguments = BootstrapCallSiteDescriptor.staticArgumentsOf(callSiteDescriptor);
         var args = linkRequest.getArguments();
         var methodType = callSiteDescriptor.getMethodType();
 
-        return receiver.link(op, namespaces, name, methodType, receiver, args);
+        var profile = BootstrapCallSiteDescriptor.profileOf(callSiteDescriptor);
+        if (linkRequest.isCallSiteUnstable()) {
+            profile.markUnstable();
+        }
+        var result = receiver.link(op, namespaces, name, staticArguments, profile, methodType, receiver, args);
+        if (result == null) {
+            LinkerMetrics.INSTANCE.linkFailure();
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = callSiteDescriptor.getOperation().toString();
+            event.methodType = methodType.toString();
+            event.linked = result != null;
+            event.links = links;
+            event.commit();
+        }
+        return result;
     }
 
     @Override
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import jdk.dynalink.CallSiteDescriptor;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters are LongAdders so hot paths never contend on them
+final class LinkerMetrics implements LinkerMetricsMXBean {
+    static final LinkerMetrics INSTANCE = new LinkerMetrics();
+
+    private final LongAdder linkAttempts = new LongAdder();
+    private final LongAdder linkFailures = new LongAdder();
+    private final LongAdder relinks = new LongAdder();
+    private final AtomicInteger maxLinksPerCallSite = new AtomicInteger();
+    private final ConcurrentHashMap<String, LongAdder> relinksByOperation = new ConcurrentHashMap<>();
+    private final LongAdder guardMisses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder pagesMapped = new LongAdder();
+    private final LongAdder pagesUnmapped = new LongAdder();
+
+    private LinkerMetrics() {
+
+    }
+
+    // Opt in as starting the platform MBean server is not free
+    static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                    new ObjectName("com.sstewartgallus.peacod.runtime:type=Linker"));
+        } catch (JMException e) {
+            // Another copy of the runtime got there first, run unmonitored
+        }
+    }
+
+    // Returns how many times the call site has been linked including this one
+    int linkAttempt(CallSiteDescriptor descriptor) {
+        var links = BootstrapCallSiteDescriptor.countLink(descriptor);
+        linkAttempt(descriptor.getOperation().toString(), descriptor.getMethodType(), links);
+        return links;
+    }
+
+    // For call sites that count their own links
+    void linkAttempt(String operation, MethodType methodType, int links) {
+        linkAttempts.increment();
+
+        if (links <= 1) {
+            return;
+        }
+        relinks.increment();
+        maxLinksPerCallSite.accumulateAndGet(links, Math::max);
+        relinksByOperation
+                .computeIfAbsent(operation + methodType, (k) -> new LongAdder())
+                .increment();
+    }
+
+    void linkFailure() {
+        linkFailures.increment();
+    }
+
+    void guardMissed() {
+        guardMisses.increment();
+    }
+
+    void invalidated() {
+        invalidations.increment();
+    }
+
+    void pagesMapped(long count) {
+        pagesMapped.add(count);
+    }
+
+    void pagesUnmapped(long count) {
+        pagesUnmapped.add(count);
+    }
+
+    @Override
+    public long getLinkAttempts() {
+        return linkAttempts.sum();
+    }
+
+    @Override
+    public long getLinkFailures() {
+        return linkFailures.sum();
+    }
+
+    @Override
+    public long getRelinks() {
+        return relinks.sum();
+    }
+
+    @Override
+    public int getMaxLinksPerCallSite() {
+        return maxLinksPerCallSite.get();
+    }
+
+    @Override
+    public Map<String, Long> getRelinksByOperation() {
+        var result = new HashMap<String, Long>();
+        relinksByOperation.forEach((operation, count) -> result.put(operation, count.sum()));
+        return result;
+    }
+
+    @Override
+    public long getGuardMisses() {
+        return guardMisses.sum();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public long getPagesMapped() {
+        return pagesMapped.sum();
+    }
+
+    @Override
+    public long getPagesUnmapped() {
+        return pagesUnmapped.sum();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import java.util.Map;
+
+// Registered as com.sstewartgallus.peacod.runtime:type=Linker when the
+// com.sstewartgallus.peacod.runtime.linkerMetrics system property is true
+public interface LinkerMetricsMXBean {
+    long getLinkAttempts();
+
+    // Link requests no Context could satisfy
+    long getLinkFailures();
+
+    // Links of a call site after its first
+    long getRelinks();
+
+    int getMaxLinksPerCallSite();
+
+    // Keyed by operation and method type so call sites sharing both are
+    // counted together, only operations that relinked show up
+    Map<String, Long> getRelinksByOperation();
+
+    // Relinks of memory call sites because no linked guard matched, Dynalink
+    // sites relink through their own fallback and aren't counted
+    long getGuardMisses();
+
+    long getInvalidations();
+
+    long getPagesMapped();
+
+    long getPagesUnmapped();
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import jdk.dynalink.linker.GuardedInvocation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.LinkedList;
+
+// Links GET:ELEMENT:memory and SET:ELEMENT:memory straight to the receiving
+// context without going through Dynalink. It follows the same policy as the
+// Dynalink call sites: like a ChainedCallSite it keeps up to maxChainLength
+// linkages, newest first, and drops the oldest on a miss. A chain of one is
+// monomorphic. Once the site has been relinked unstableRelinkThreshold times
+// (0 never) it links to a generic handle that takes any context.
+final class MemoryCallSite extends MutableCallSite {
+    private static final MethodHandle RELINK_AND_INVOKE;
+
+    static {
+        try {
+            RELINK_AND_INVOKE = MethodHandles.lookup().findVirtual(MemoryCallSite.class, "relinkAndInvoke",
+                    MethodType.methodType(Object.class, boolean.class, Object[].class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String operation;
+    private final boolean store;
+    private final int maxChainLength;
+    private final int unstableRelinkThreshold;
+    private final MethodHandle relinkAndInvoke;
+    // Taken when every guard in the chain failed, rather than on invalidation
+    private final MethodHandle missAndInvoke;
+    private final CallSiteProfile profile = new CallSiteProfile();
+
+    private final LinkedList<GuardedInvocation> invocations = new LinkedList<>();
+    private int links = 0;
+
+    MemoryCallSite(String operation, boolean store, MethodType type, int maxChainLength, int unstableRelinkThreshold) {
+        super(type);
+        this.operation = operation;
+        this.store = store;
+        this.maxChainLength = maxChainLength;
+        this.unstableRelinkThreshold = unstableRelinkThreshold;
+        this.relinkAndInvoke = relinkAndInvoke(false);
+        this.missAndInvoke = relinkAndInvoke(true);
+        setTarget(relinkAndInvoke);
+    }
+
+    private MethodHandle relinkAndInvoke(boolean guardMissed) {
+        return MethodHandles.insertArguments(RELINK_AND_INVOKE, 0, this, guardMissed)
+                .asCollector(Object[].class, type().parameterCount())
+                .asType(type());
+    }
+
+    @SuppressWarnings("unused")
+    private Object relinkAndInvoke(boolean guardMissed, Object[] arguments) throws Throwable {
+        if (guardMissed) {
+            LinkerMetrics.INSTANCE.guardMissed();
+        }
+        return relink(arguments).invokeWithArguments(arguments);
+    }
+
+    private synchronized MethodHandle relink(Object[] arguments) {
+        var event = new LinkEvent();
+        event.begin();
+
+        ++links;
+        LinkerMetrics.INSTANCE.linkAttempt(operation, type(), links);
+
+        // Counted like Dynalink does, the first link is not a relink
+        if (unstableRelinkThreshold > 0 && links - 1 >= unstableRelinkThreshold) {
+            profile.markUnstable();
+        }
+
+        var context = (Context) arguments[0];
+        var invocation = context.linkMemory(store, profile, type(), arguments);
+        if (invocation == null) {
+            // The type was checked when bootstrapping
+            LinkerMetrics.INSTANCE.linkFailure();
+            throw new IllegalStateException(operation + type());
+        }
+
+        invocations.removeIf(GuardedInvocation::hasBeenInvalidated);
+        if (invocation.getGuard() == null && invocation.getSwitchPoints() == null) {
+            // Nothing behind an unguarded linkage is ever reached
+            invocations.clear();
+        } else if (invocations.size() == maxChainLength) {
+            invocations.removeFirst();
+        }
+        invocations.addLast(invocation);
+
+        var target = missAndInvoke;
+        for (var inv : invocations) {
+            // No memory linkage declares an exception, the catch fallback is never used
+            target = inv.compose(target, relinkAndInvoke, relinkAndInvoke);
+        }
+        setTarget(target);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.methodType = type().toString();
+            event.linked = true;
+            event.links = links;
+            event.commit();
+        }
+        return target;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+// Where a Context gets the memory for its anonymous pages
+public enum PageBacking {
+    // byte[] pages on the Java heap
+    HEAP,
+
+    // Aligned off-heap pages freed by the GC once the Context is unreachable
+    AUTO,
+
+    // Aligned off-heap pages freed as soon as they are unmapped or the Context is closed.
+    // Unsafe: the memory is only freed after every linked call site has been
+    // invalidated, so later accesses throw IllegalStateException, but an access
+    // already under way on another thread is not stopped and touching freed
+    // native memory can crash the JVM. Callers must synchronize externally so no
+    // thread accesses a page while it is unmapped or the Context is closed.
+    EXPLICIT
+}
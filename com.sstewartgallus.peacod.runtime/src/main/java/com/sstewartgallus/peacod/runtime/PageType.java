@@ -0,0 +1,250 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+abstract class PageType<P> {
+    static long pack(int low, int high) {
+        return (low & 0xFFFFFFFFL) | ((long) high << 32);
+    }
+
+    abstract P anonymousPage(int size);
+
+    abstract byte getByte(P page, int index);
+
+    abstract void setByte(P page, int index, byte value);
+
+    abstract short getShort(P page, int index);
+
+    abstract void setShort(P page, int index, short value);
+
+    abstract int getInt(P page, int index);
+
+    abstract void setInt(P page, int index, int value);
+
+    abstract long getLong(P page, int index);
+
+    abstract void setLong(P page, int index, long value);
+
+    // The remaining primitives are just reinterpretations of the above
+
+    boolean getBoolean(P page, int index) {
+        return getByte(page, index) != 0;
+    }
+
+    void setBoolean(P page, int index, boolean value) {
+        setByte(page, index, value ? (byte) 1 : (byte) 0);
+    }
+
+    char getChar(P page, int index) {
+        return (char) getShort(page, index);
+    }
+
+    void setChar(P page, int index, char value) {
+        setShort(page, index, (short) value);
+    }
+
+    float getFloat(P page, int index) {
+        return Float.intBitsToFloat(getInt(page, index));
+    }
+
+    void setFloat(P page, int index, float value) {
+        setInt(page, index, Float.floatToRawIntBits(value));
+    }
+
+    double getDouble(P page, int index) {
+        return Double.longBitsToDouble(getLong(page, index));
+    }
+
+    void setDouble(P page, int index, double value) {
+        setLong(page, index, Double.doubleToRawLongBits(value));
+    }
+
+    // The atomic and ordered accesses go through the page's int and long views,
+    // which throw IllegalStateException on indices that aren't naturally aligned
+    abstract VarHandle intView();
+
+    abstract VarHandle longView();
+
+    // Where index lies in the view's coordinates
+    int offset(int index) {
+        return index;
+    }
+
+    // The views check bounds before alignment, so a misaligned access
+    // crossing the end of the page has to be caught here
+    private int alignedOffset(int index, int size) {
+        if ((index & (size - 1)) != 0) {
+            throw new IllegalStateException("misaligned access at index " + index);
+        }
+        return offset(index);
+    }
+
+    int getVolatileInt(P page, int index) {
+        return (int) intView().getVolatile(page, alignedOffset(index, Integer.BYTES));
+    }
+
+    void setVolatileInt(P page, int index, int value) {
+        intView().setVolatile(page, alignedOffset(index, Integer.BYTES), value);
+    }
+
+    int getAcquireInt(P page, int index) {
+        return (int) intView().getAcquire(page, alignedOffset(index, Integer.BYTES));
+    }
+
+    void setReleaseInt(P page, int index, int value) {
+        intView().setRelease(page, alignedOffset(index, Integer.BYTES), value);
+    }
+
+    int getOpaqueInt(P page, int index) {
+        return (int) intView().getOpaque(page, alignedOffset(index, Integer.BYTES));
+    }
+
+    void setOpaqueInt(P page, int index, int value) {
+        intView().setOpaque(page, alignedOffset(index, Integer.BYTES), value);
+    }
+
+    boolean compareAndSetInt(P page, int index, int expected, int value) {
+        return intView().compareAndSet(page, alignedOffset(index, Integer.BYTES), expected, value);
+    }
+
+    int getAndAddInt(P page, int index, int delta) {
+        return (int) intView().getAndAdd(page, alignedOffset(index, Integer.BYTES), delta);
+    }
+
+    int getAndSetInt(P page, int index, int value) {
+        return (int) intView().getAndSet(page, alignedOffset(index, Integer.BYTES), value);
+    }
+
+    long getVolatileLong(P page, int index) {
+        return (long) longView().getVolatile(page, alignedOffset(index, Long.BYTES));
+    }
+
+    void setVolatileLong(P page, int index, long value) {
+        longView().setVolatile(page, alignedOffset(index, Long.BYTES), value);
+    }
+
+    long getAcquireLong(P page, int index) {
+        return (long) longView().getAcquire(page, alignedOffset(index, Long.BYTES));
+    }
+
+    void setReleaseLong(P page, int index, long value) {
+        longView().setRelease(page, alignedOffset(index, Long.BYTES), value);
+    }
+
+    long getOpaqueLong(P page, int index) {
+        return (long) longView().getOpaque(page, alignedOffset(index, Long.BYTES));
+    }
+
+    void setOpaqueLong(P page, int index, long value) {
+        longView().setOpaque(page, alignedOffset(index, Long.BYTES), value);
+    }
+
+    boolean compareAndSetLong(P page, int index, long expected, long value) {
+        return longView().compareAndSet(page, alignedOffset(index, Long.BYTES), expected, value);
+    }
+
+    long getAndAddLong(P page, int index, long delta) {
+        return (long) longView().getAndAdd(page, alignedOffset(index, Long.BYTES), delta);
+    }
+
+    long getAndSetLong(P page, int index, long value) {
+        return (long) longView().getAndSet(page, alignedOffset(index, Long.BYTES), value);
+    }
+
+    // The bulk kernels below work on count ints that all lie inside one page.
+    // They move two ints per long load and unroll by four, which is safe in
+    // either byte order because both halves of a long get the same treatment.
+    int sumInts(P page, int index, int count) {
+        var low = 0;
+        var high = 0;
+        var ii = 0;
+        for (; ii + 4 <= count; ii += 4) {
+            var offset = index + Integer.BYTES * ii;
+            var x = getLong(page, offset);
+            var y = getLong(page, offset + Long.BYTES);
+            low += (int) x + (int) y;
+            high += (int) (x >>> 32) + (int) (y >>> 32);
+        }
+        for (; ii < count; ++ii) {
+            low += getInt(page, index + Integer.BYTES * ii);
+        }
+        return low + high;
+    }
+
+    int dotInts(P page, int index, PageType<Object> other, Object otherPage, int otherIndex, int count) {
+        var low = 0;
+        var high = 0;
+        var ii = 0;
+        for (; ii + 4 <= count; ii += 4) {
+            var offset = Integer.BYTES * ii;
+            var x0 = getLong(page, index + offset);
+            var x1 = getLong(page, index + offset + Long.BYTES);
+            var y0 = other.getLong(otherPage, otherIndex + offset);
+            var y1 = other.getLong(otherPage, otherIndex + offset + Long.BYTES);
+            low += (int) x0 * (int) y0 + (int) x1 * (int) y1;
+            high += (int) (x0 >>> 32) * (int) (y0 >>> 32) + (int) (x1 >>> 32) * (int) (y1 >>> 32);
+        }
+        for (; ii < count; ++ii) {
+            var offset = Integer.BYTES * ii;
+            low += getInt(page, index + offset) * other.getInt(otherPage, otherIndex + offset);
+        }
+        return low + high;
+    }
+
+    void mulInts(P page, int index, PageType<Object> other, Object otherPage, int otherIndex, int count) {
+        var ii = 0;
+        for (; ii + 4 <= count; ii += 4) {
+            var offset = Integer.BYTES * ii;
+            var x0 = getLong(page, index + offset);
+            var x1 = getLong(page, index + offset + Long.BYTES);
+            var y0 = other.getLong(otherPage, otherIndex + offset);
+            var y1 = other.getLong(otherPage, otherIndex + offset + Long.BYTES);
+            setLong(page, index + offset, pack((int) x0 * (int) y0, (int) (x0 >>> 32) * (int) (y0 >>> 32)));
+            setLong(page, index + offset + Long.BYTES, pack((int) x1 * (int) y1, (int) (x1 >>> 32) * (int) (y1 >>> 32)));
+        }
+        for (; ii < count; ++ii) {
+            var offset = Integer.BYTES * ii;
+            setInt(page, index + offset, getInt(page, index + offset) * other.getInt(otherPage, otherIndex + offset));
+        }
+    }
+
+    // Gathers count ints spaced stride bytes apart in otherPage into consecutive ints of page
+    void gatherInts(P page, int index, PageType<Object> other, Object otherPage, int otherIndex, int stride, int count) {
+        for (var ii = 0; ii < count; ++ii) {
+            setInt(page, index + Integer.BYTES * ii, other.getInt(otherPage, otherIndex + stride * ii));
+        }
+    }
+
+    // Scatters count consecutive ints of otherPage into ints spaced stride bytes apart in page
+    void scatterInts(P page, int index, int stride, PageType<Object> other, Object otherPage, int otherIndex, int count) {
+        for (var ii = 0; ii < count; ++ii) {
+            setInt(page, index + stride * ii, other.getInt(otherPage, otherIndex + Integer.BYTES * ii));
+        }
+    }
+
+    // Copies length bytes of src starting at srcIndex into page starting at index
+    abstract void copy(P page, int index, PageType<Object> src, Object srcPage, int srcIndex, int length);
+
+    abstract void copyTo(P page, int index, byte[] dest, int destOffset, int length);
+
+    // Fills all of dest's remaining bytes
+    abstract void copyTo(P page, int index, ByteBuffer dest);
+
+    public abstract Page box(P page);
+}
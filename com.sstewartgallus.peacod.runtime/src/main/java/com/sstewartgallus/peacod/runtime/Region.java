@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import java.util.Arrays;
+
+// Bump allocates out of whole page spans and gives them all back at once.
+// Freed pages go to the same pool as freed malloc spans.
+// Not thread safe, a region belongs to one scope at a time.
+public final class Region implements AutoCloseable {
+    private static final int ALIGNMENT = Long.BYTES;
+
+    private final Allocator allocator;
+    private final int indexBits;
+
+    private int[] spanIds = new int[4];
+    private int[] spanLengths = new int[4];
+    // Page ids get reused, generations tell a mark's span from a later one
+    private int[] spanGenerations = new int[4];
+    private int spanCount = 0;
+    private int generation = 0;
+
+    // long so the end of the last int page doesn't wrap around
+    private long top = 0;
+    private long end = 0;
+
+    private boolean closed = false;
+
+    Region(Allocator allocator, int indexBits) {
+        this.allocator = allocator;
+        this.indexBits = indexBits;
+    }
+
+    // 8 byte aligned, valid until the region is closed or reset past it
+    public int allocate(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative size: " + size);
+        }
+        if (closed) {
+            throw new IllegalStateException("region is closed");
+        }
+        // Empty allocations still get their own address
+        var aligned = Math.max(ALIGNMENT, ((long) size + ALIGNMENT - 1) & -ALIGNMENT);
+        if (end - top < aligned || spanCount == 0) {
+            var pages = (int) Math.max(1, ((aligned - 1) >> indexBits) + 1);
+            var pageId = allocator.reservePages(pages);
+            if (spanCount == spanIds.length) {
+                spanIds = Arrays.copyOf(spanIds, 2 * spanCount);
+                spanLengths = Arrays.copyOf(spanLengths, 2 * spanCount);
+                spanGenerations = Arrays.copyOf(spanGenerations, 2 * spanCount);
+            }
+            spanIds[spanCount] = pageId;
+            spanLengths[spanCount] = pages;
+            spanGenerations[spanCount] = ++generation;
+            ++spanCount;
+            top = (long) pageId << indexBits;
+            end = top + ((long) pages << indexBits);
+        }
+        var addr = top;
+        top += aligned;
+        return (int) addr;
+    }
+
+    // Marks must be reset in stack order, like push and pop. A mark past an
+    // earlier reset is stale.
+    public long mark() {
+        if (spanCount == 0) {
+            return 0;
+        }
+        var start = (long) spanIds[spanCount - 1] << indexBits;
+        return ((long) spanGenerations[spanCount - 1] << Integer.SIZE) | (top - start);
+    }
+
+    // Frees everything allocated since the mark
+    public void reset(long mark) {
+        var markGeneration = (int) (mark >>> Integer.SIZE);
+        var offset = mark & 0xFFFFFFFFL;
+        if (markGeneration == 0) {
+            if (offset != 0) {
+                throw new IllegalArgumentException("stale mark: " + mark);
+            }
+            release(0);
+            top = 0;
+            end = 0;
+            return;
+        }
+
+        var count = spanCount;
+        while (count > 0 && spanGenerations[count - 1] != markGeneration) {
+            --count;
+        }
+        if (count == 0 || (count == spanCount && ((long) spanIds[count - 1] << indexBits) + offset > top)) {
+            throw new IllegalArgumentException("stale mark: " + mark);
+        }
+        release(count);
+        var start = (long) spanIds[count - 1] << indexBits;
+        top = start + offset;
+        end = start + ((long) spanLengths[count - 1] << indexBits);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        release(0);
+        top = 0;
+        end = 0;
+    }
+
+    private void release(int keep) {
+        while (spanCount > keep) {
+            --spanCount;
+            allocator.returnPages(spanIds[spanCount], spanLengths[spanCount]);
+        }
+    }
+}
@@ -16,5 +16,9 @@
 
 module com.sstewartgallus.peacod.runtime {
     requires jdk.dynalink;
+    // sun.misc.Unsafe, only used by DirectMemory
+    requires jdk.unsupported;
+    requires java.management;
+    requires jdk.jfr;
     exports com.sstewartgallus.peacod.runtime;
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.sstewartgallus.peacod.runtime.Sites.GET_BYTE;
+import static com.sstewartgallus.peacod.runtime.Sites.SET_BYTE;
+import static com.sstewartgallus.peacod.runtime.Sites.memorySite;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AllocatorTest {
+    private static final MethodHandle GET_INT = memorySite("GET:ELEMENT:memory", MethodType.methodType(int.class, Context.class, int.class));
+    private static final MethodHandle SET_INT = memorySite("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, int.class, int.class));
+    private static final int THREADS = 4;
+
+    private Context context;
+
+    @BeforeEach
+    void setUp() {
+        context = Context.newInstance();
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void mallocHandsOutDistinctAlignedBlocks() {
+        var blocks = new HashSet<Integer>();
+        for (var ii = 0; ii < 1000; ++ii) {
+            var addr = context.malloc(16);
+            assertEquals(0, addr % 16);
+            assertTrue(blocks.add(addr));
+        }
+        for (var addr : blocks) {
+            context.free(addr);
+        }
+    }
+
+    @Test
+    void freedBlocksAreReused() {
+        var addr = context.malloc(16);
+        context.free(addr);
+        assertEquals(addr, context.malloc(16));
+    }
+
+    @Test
+    void doubleFreeThrows() {
+        var addr = context.malloc(16);
+        context.free(addr);
+        assertThrows(IllegalArgumentException.class, () -> context.free(addr));
+        assertNotEquals(context.malloc(16), context.malloc(16));
+    }
+
+    @Test
+    void freeOfBlockNeverHandedOutThrows() {
+        var addr = context.malloc(16);
+        assertThrows(IllegalArgumentException.class, () -> context.free(addr + 16));
+    }
+
+    @Test
+    void freeOfMisalignedAddressThrows() {
+        var addr = context.malloc(16);
+        assertThrows(IllegalArgumentException.class, () -> context.free(addr + 1));
+    }
+
+    @Test
+    void doubleFreeOfSpanThrows() {
+        var addr = context.malloc(2 * context.pageSize());
+        context.free(addr);
+        assertThrows(IllegalArgumentException.class, () -> context.free(addr));
+    }
+
+    @Test
+    void reallocKeepsContents() throws Throwable {
+        var addr = context.malloc(16);
+        for (var ii = 0; ii < 16; ++ii) {
+            SET_BYTE.invokeExact(context, addr + ii, (byte) ii);
+        }
+        var grown = context.realloc(addr, 3 * context.pageSize());
+        assertNotEquals(addr, grown);
+        for (var ii = 0; ii < 16; ++ii) {
+            assertEquals((byte) ii, (byte) GET_BYTE.invokeExact(context, grown + ii));
+        }
+        assertThrows(IllegalArgumentException.class, () -> context.free(addr));
+        context.free(grown);
+    }
+
+    @Test
+    void reallocWithinCapacityKeepsBlock() {
+        var addr = context.malloc(10);
+        assertEquals(addr, context.realloc(addr, 16));
+    }
+
+    @Test
+    void reallocOfFreedBlockThrows() {
+        var addr = context.malloc(16);
+        context.free(addr);
+        assertThrows(IllegalArgumentException.class, () -> context.realloc(addr, 64));
+    }
+
+    @Test
+    void closedContextHandsOutNothing() {
+        var addr = context.malloc(16);
+        context.close();
+        assertThrows(IllegalStateException.class, () -> context.malloc(16));
+        assertThrows(IllegalStateException.class, () -> context.realloc(addr, 64));
+        assertThrows(IllegalStateException.class, () -> context.free(addr));
+    }
+
+    @Test
+    void threadsShareNoLiveBlocks() throws Exception {
+        var live = ConcurrentHashMap.<Integer>newKeySet();
+        // Blocks freed by whichever thread polls them first, often not the one that allocated them
+        var handedOff = new ConcurrentLinkedQueue<int[]>();
+        var tasks = new ArrayList<Callable<Void>>();
+        for (var ii = 0; ii < THREADS; ++ii) {
+            var thread = ii;
+            tasks.add(() -> {
+                try {
+                    churn(thread, live, handedOff);
+                } catch (Throwable t) {
+                    throw new AssertionError(t);
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+        for (var block : handedOff) {
+            try {
+                checkAndFree(live, block);
+            } catch (Throwable t) {
+                throw new AssertionError(t);
+            }
+        }
+        assertTrue(live.isEmpty());
+    }
+
+    private void churn(int thread, Set<Integer> live, ConcurrentLinkedQueue<int[]> handedOff) throws Throwable {
+        int[] sizes = {1, 8, 24, 100, 1024, 2 * context.pageSize()};
+        var random = new Random(thread);
+        var mine = new ArrayDeque<int[]>();
+        for (var ii = 0; ii < 2000; ++ii) {
+            var addr = context.malloc(sizes[random.nextInt(sizes.length)]);
+            assertTrue(live.add(addr), "handed out twice");
+            var tag = thread << 24 | ii;
+            SET_INT.invokeExact(context, addr, tag);
+            (random.nextBoolean() ? mine : handedOff).add(new int[]{addr, tag});
+
+            if (mine.size() > 16) {
+                checkAndFree(live, mine.poll());
+            }
+            var other = handedOff.poll();
+            if (other != null) {
+                checkAndFree(live, other);
+            }
+        }
+        while (!mine.isEmpty()) {
+            checkAndFree(live, mine.poll());
+        }
+    }
+
+    // Overlapping live blocks would clobber each other's tags
+    private void checkAndFree(Set<Integer> live, int[] block) throws Throwable {
+        var addr = block[0];
+        assertEquals(block[1], (int) GET_INT.invokeExact(context, addr));
+        assertTrue(live.remove(addr));
+        context.free(addr);
+    }
+
+    @Test
+    void racingDoubleFreesAreRejected() throws Exception {
+        var blocks = new ArrayList<Integer>();
+        for (var ii = 0; ii < 500; ++ii) {
+            blocks.add(context.malloc(ii % 2 == 0 ? 16 : 2 * context.pageSize()));
+        }
+        var freed = new AtomicInteger();
+        var rejected = new AtomicInteger();
+        var start = new CyclicBarrier(THREADS);
+        var tasks = new ArrayList<Callable<Void>>();
+        for (var ii = 0; ii < THREADS; ++ii) {
+            tasks.add(() -> {
+                start.await();
+                for (var addr : blocks) {
+                    try {
+                        context.free(addr);
+                        freed.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+        assertEquals(blocks.size(), freed.get());
+        assertEquals((THREADS - 1) * blocks.size(), rejected.get());
+    }
+
+    private static void runAll(ArrayList<Callable<Void>> tasks) throws Exception {
+        var executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            for (var future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
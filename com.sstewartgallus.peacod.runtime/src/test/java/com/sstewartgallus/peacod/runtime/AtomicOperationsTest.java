@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.sstewartgallus.peacod.runtime.Sites.site;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AtomicOperationsTest {
+    private static final MethodType GET_INT = MethodType.methodType(int.class, Context.class, int.class);
+    private static final MethodType SET_INT = MethodType.methodType(void.class, Context.class, int.class, int.class);
+    private static final MethodType GET_LONG = MethodType.methodType(long.class, Context.class, int.class);
+    private static final MethodType SET_LONG = MethodType.methodType(void.class, Context.class, int.class, long.class);
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void compareAndSetInt(PageBacking backing) throws Throwable {
+        var cas = site("CALL:METHOD:compareAndSet",
+                MethodType.methodType(boolean.class, Context.class, int.class, int.class, int.class), int.class);
+        var getVolatile = site("CALL:METHOD:getVolatile", GET_INT, int.class);
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var addr = context.anonymousPage() + 16;
+            assertTrue((boolean) cas.invokeExact(context, addr, 0, 5));
+            assertFalse((boolean) cas.invokeExact(context, addr, 0, 7));
+            assertEquals(5, (int) getVolatile.invokeExact(context, addr));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void compareAndSetLong(PageBacking backing) throws Throwable {
+        var cas = site("CALL:METHOD:compareAndSet",
+                MethodType.methodType(boolean.class, Context.class, int.class, long.class, long.class), "J");
+        var getAcquire = site("CALL:METHOD:getAcquire", GET_LONG, "J");
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var addr = context.anonymousPage() + 8;
+            assertTrue((boolean) cas.invokeExact(context, addr, 0L, 1L << 40));
+            assertFalse((boolean) cas.invokeExact(context, addr, 0L, 3L));
+            assertEquals(1L << 40, (long) getAcquire.invokeExact(context, addr));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void getAndAddAndGetAndSet(PageBacking backing) throws Throwable {
+        var getAndAdd = site("CALL:METHOD:getAndAdd",
+                MethodType.methodType(int.class, Context.class, int.class, int.class), int.class);
+        var getAndSet = site("CALL:METHOD:getAndSet",
+                MethodType.methodType(long.class, Context.class, int.class, long.class), long.class);
+        var setRelease = site("CALL:METHOD:setRelease", SET_INT, int.class);
+        var getOpaque = site("CALL:METHOD:getOpaque", GET_INT, int.class);
+        var setOpaque = site("CALL:METHOD:setOpaque", SET_LONG, long.class);
+        var getVolatile = site("CALL:METHOD:getVolatile", GET_LONG, long.class);
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var page = context.anonymousPage();
+            setRelease.invokeExact(context, page, 40);
+            assertEquals(40, (int) getAndAdd.invokeExact(context, page, 2));
+            assertEquals(42, (int) getOpaque.invokeExact(context, page));
+
+            setOpaque.invokeExact(context, page + 8, -1L);
+            assertEquals(-1L, (long) getAndSet.invokeExact(context, page + 8, 9L));
+            assertEquals(9L, (long) getVolatile.invokeExact(context, page + 8));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void misalignedAndPageCrossingAccessesThrow(PageBacking backing) throws Throwable {
+        var getAndAdd = site("CALL:METHOD:getAndAdd",
+                MethodType.methodType(int.class, Context.class, int.class, int.class), int.class);
+        var setVolatile = site("CALL:METHOD:setVolatile", SET_LONG, long.class);
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var first = context.anonymousPage();
+            var second = context.anonymousPage();
+            assertEquals(first + context.pageSize(), second);
+            assertThrows(IllegalStateException.class, () -> {
+                var ignored = (int) getAndAdd.invokeExact(context, first + 1, 1);
+            });
+            // Page sizes are multiples of 8 so a long crossing pages is misaligned too
+            assertThrows(IllegalStateException.class, () -> {
+                setVolatile.invokeExact(context, second - 4, 1L);
+            });
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void concurrentGetAndAddCountsEveryIncrement(PageBacking backing) throws Exception {
+        var getAndAdd = site("CALL:METHOD:getAndAdd",
+                MethodType.methodType(int.class, Context.class, int.class, int.class), int.class);
+        var getVolatile = site("CALL:METHOD:getVolatile", GET_INT, int.class);
+        var threads = 4;
+        var increments = 10_000;
+        var executor = Executors.newFixedThreadPool(threads);
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var addr = context.anonymousPage() + 64;
+            var tasks = new ArrayList<Callable<Void>>();
+            for (var ii = 0; ii < threads; ++ii) {
+                tasks.add(() -> {
+                    for (var jj = 0; jj < increments; ++jj) {
+                        try {
+                            var ignored = (int) getAndAdd.invokeExact(context, addr, 1);
+                        } catch (Throwable t) {
+                            throw new AssertionError(t);
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (var future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            try {
+                assertEquals(threads * increments, (int) getVolatile.invokeExact(context, addr));
+            } catch (Throwable t) {
+                throw new AssertionError(t);
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.sstewartgallus.peacod.runtime.Sites.GET_BYTE;
+import static com.sstewartgallus.peacod.runtime.Sites.SET_BYTE;
+import static com.sstewartgallus.peacod.runtime.Sites.site;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Bulk operations whose ints straddle a page boundary take the slow path
+class BulkOperationsTest {
+    private Context context;
+    private int boundary;
+
+    @BeforeEach
+    void setUp() {
+        context = Context.newInstance();
+        var first = context.anonymousPage();
+        var second = context.anonymousPage();
+        assertEquals(first + context.pageSize(), second);
+        boundary = second;
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    private void putInt(int addr, int value) throws Throwable {
+        var bytes = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder()).putInt(0, value).array();
+        for (var ii = 0; ii < Integer.BYTES; ++ii) {
+            SET_BYTE.invokeExact(context, addr + ii, bytes[ii]);
+        }
+    }
+
+    private int intAt(int addr) throws Throwable {
+        var bytes = new byte[Integer.BYTES];
+        for (var ii = 0; ii < Integer.BYTES; ++ii) {
+            bytes[ii] = (byte) GET_BYTE.invokeExact(context, addr + ii);
+        }
+        return ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder()).getInt();
+    }
+
+    @Test
+    void sumAcrossPageBoundary() throws Throwable {
+        var sum = site("CALL:METHOD:sum", MethodType.methodType(int.class, Context.class, int.class), "I", 3);
+        var addr = boundary - 2;
+        putInt(addr, 0x01020304);
+        putInt(addr + 4, 0x10203040);
+        putInt(addr + 8, 7);
+        assertEquals(0x01020304 + 0x10203040 + 7, (int) sum.invokeExact(context, addr));
+    }
+
+    @Test
+    void sumOfLargeCountDoesNotOverflowPageCheck() {
+        var sum = site("CALL:METHOD:sum", MethodType.methodType(int.class, Context.class, int.class), "I", Integer.MAX_VALUE / Integer.BYTES);
+        // Walks off the end of the mapped pages instead of running past the end of the first one
+        assertThrows(IllegalStateException.class, () -> {
+            var ignored = (int) sum.invokeExact(context, boundary - 2);
+        });
+    }
+
+    @Test
+    void gatherAcrossPageBoundary() throws Throwable {
+        var gather = site("CALL:METHOD:gather", MethodType.methodType(void.class, Context.class, int.class, int.class), "I", 2, 1);
+        var src = boundary - 2;
+        for (var ii = 0; ii < 2 * Integer.BYTES; ++ii) {
+            SET_BYTE.invokeExact(context, src + ii, (byte) (ii + 1));
+        }
+        var dest = boundary - 100;
+        gather.invokeExact(context, dest, src);
+        var expected = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}).order(ByteOrder.nativeOrder());
+        assertEquals(expected.getInt(0), intAt(dest));
+        assertEquals(expected.getInt(4), intAt(dest + 4));
+    }
+
+    @Test
+    void scatterAcrossPageBoundary() throws Throwable {
+        var scatter = site("CALL:METHOD:scatter", MethodType.methodType(void.class, Context.class, int.class, int.class), "I", 2, 2);
+        var src = boundary - 100;
+        putInt(src, 0x0A0B0C0D);
+        putInt(src + 4, -0x01020304);
+        var dest = boundary - 10;
+        scatter.invokeExact(context, dest, src);
+        assertEquals(0x0A0B0C0D, intAt(dest));
+        assertEquals(-0x01020304, intAt(dest + 8));
+    }
+
+    @Test
+    void dotAcrossPageBoundary() throws Throwable {
+        var dot = site("CALL:METHOD:dot", MethodType.methodType(int.class, Context.class, int.class, int.class), "I", 2);
+        var left = boundary - 6;
+        var right = boundary - 100;
+        putInt(left, 3);
+        putInt(left + 4, -5);
+        putInt(right, 0x7F00FF01);
+        putInt(right + 4, 11);
+        assertEquals(3 * 0x7F00FF01 + -5 * 11, (int) dot.invokeExact(context, left, right));
+    }
+
+    @Test
+    void mulAcrossPageBoundary() throws Throwable {
+        var mul = site("CALL:METHOD:mul", MethodType.methodType(void.class, Context.class, int.class, int.class), "I", 2);
+        var accum = boundary - 3;
+        var src = boundary - 16;
+        putInt(accum, 0x12345678);
+        putInt(accum + 4, -2);
+        putInt(src, 3);
+        putInt(src + 4, 0x01010101);
+        mul.invokeExact(context, accum, src);
+        assertEquals(0x12345678 * 3, intAt(accum));
+        assertEquals(-2 * 0x01010101, intAt(accum + 4));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.invoke.MethodType;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.sstewartgallus.peacod.runtime.Sites.GET_BYTE;
+import static com.sstewartgallus.peacod.runtime.Sites.SET_BYTE;
+import static com.sstewartgallus.peacod.runtime.Sites.site;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CopyTest {
+    private static final MethodType COPY = MethodType.methodType(void.class, Context.class, int.class, int.class);
+
+    private static void fill(Context context, int addr, int length, int seed) throws Throwable {
+        for (var ii = 0; ii < length; ++ii) {
+            SET_BYTE.invokeExact(context, addr + ii, (byte) (seed + ii));
+        }
+    }
+
+    private static void check(Context context, int addr, int length, int seed) throws Throwable {
+        for (var ii = 0; ii < length; ++ii) {
+            assertEquals((byte) (seed + ii), (byte) GET_BYTE.invokeExact(context, addr + ii));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void copyAcrossPageBoundaries(PageBacking backing) throws Throwable {
+        var copy = site("CALL:METHOD:copy", COPY, byte.class, 100);
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var pages = new int[4];
+            for (var ii = 0; ii < pages.length; ++ii) {
+                pages[ii] = context.anonymousPage();
+            }
+            // The two ranges cross their page boundaries at different offsets
+            var src = pages[1] - 30;
+            var dest = pages[3] - 70;
+            fill(context, src, 100, 1);
+            copy.invokeExact(context, dest, src);
+            check(context, dest, 100, 1);
+            assertEquals((byte) 0, (byte) GET_BYTE.invokeExact(context, dest + 100));
+        }
+    }
+
+    @Test
+    void copyBetweenHeapAndMappedPages(@TempDir Path dir) throws Throwable {
+        // N counts elements of T, three longs are 24 bytes
+        var copy = site("CALL:METHOD:copy", COPY, "J", 3);
+        try (var context = Context.newInstance();
+             var channel = FileChannel.open(dir.resolve("pages"),
+                     StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var heap = context.anonymousPage();
+            var mapped = (int) context.mapFile(channel, 0, context.pageSize(), FileChannel.MapMode.READ_WRITE);
+
+            fill(context, heap, 24, 10);
+            copy.invokeExact(context, mapped + 8, heap);
+            check(context, mapped + 8, 24, 10);
+            assertEquals((byte) 0, (byte) GET_BYTE.invokeExact(context, mapped + 32));
+
+            fill(context, mapped + 100, 24, 50);
+            copy.invokeExact(context, heap + 200, mapped + 100);
+            check(context, heap + 200, 24, 50);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.sstewartgallus.peacod.runtime.Sites.memorySite;
+import static com.sstewartgallus.peacod.runtime.Sites.site;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LongAddressTest {
+    private static final MethodHandle GET_LONG = memorySite("GET:ELEMENT:memory", MethodType.methodType(long.class, Context.class, long.class));
+    private static final MethodHandle SET_LONG = memorySite("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, long.class, long.class));
+
+    @Test
+    void anonymousLongPages() throws Throwable {
+        try (var context = Context.newInstance()) {
+            var first = context.anonymousLongPage();
+            var second = context.anonymousLongPage();
+            SET_LONG.invokeExact(context, first + 8, 1L);
+            SET_LONG.invokeExact(context, second + 8, 2L);
+            assertEquals(1L, (long) GET_LONG.invokeExact(context, first + 8));
+            assertEquals(2L, (long) GET_LONG.invokeExact(context, second + 8));
+        }
+    }
+
+    @Test
+    void dynalinkSitesTakeLongAddresses() throws Throwable {
+        var get = site("GET:ELEMENT:memory", MethodType.methodType(int.class, Context.class, long.class));
+        var set = site("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, long.class, int.class));
+        try (var context = Context.newInstance()) {
+            var page = context.anonymousLongPage();
+            set.invokeExact(context, page + 12, 42);
+            assertEquals(42, (int) get.invokeExact(context, page + 12));
+        }
+    }
+
+    @Test
+    void addressesPastFourGiB(@TempDir Path dir) throws Throwable {
+        var size = 5L << 30;
+        // 1 GiB pages keep the page count small, the sparse file takes no space
+        try (var context = Context.newInstance(Context.MAX_PAGE_SHIFT);
+             var channel = FileChannel.open(dir.resolve("big"),
+                     StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            channel.write(ByteBuffer.allocate(1), size - 1);
+            var base = context.mapFile(channel, 0, size, FileChannel.MapMode.READ_WRITE);
+            var addr = base + (4L << 30) + 16;
+
+            SET_LONG.invokeExact(context, addr, 0x0102030405060708L);
+            assertEquals(0x0102030405060708L, (long) GET_LONG.invokeExact(context, addr));
+            // The same address truncated to an int lands somewhere else
+            assertEquals(0L, (long) GET_LONG.invokeExact(context, base + 16));
+
+            context.force(addr, Long.BYTES);
+            var bytes = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.nativeOrder());
+            channel.read(bytes, addr - base);
+            assertEquals(0x0102030405060708L, bytes.getLong(0));
+        }
+    }
+
+    @Test
+    void addressesPastTheMappedPagesThrow() {
+        try (var context = Context.newInstance()) {
+            context.anonymousLongPage();
+            assertThrows(IllegalStateException.class, () -> {
+                var ignored = (long) GET_LONG.invokeExact(context, 1L << 40);
+            });
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.sstewartgallus.peacod.runtime.Sites.memorySite;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MapFileTest {
+    private static final MethodHandle GET_INT = memorySite("GET:ELEMENT:memory", MethodType.methodType(int.class, Context.class, long.class));
+    private static final MethodHandle SET_INT = memorySite("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, long.class, int.class));
+
+    private Context context;
+    private FileChannel channel;
+
+    @BeforeEach
+    void setUp(@TempDir Path dir) throws IOException {
+        context = Context.newInstance();
+        channel = FileChannel.open(dir.resolve("file"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var contents = ByteBuffer.allocate(2 * context.pageSize()).order(ByteOrder.nativeOrder());
+        contents.putInt(8, 1).putInt(context.pageSize() + 8, 2);
+        channel.write(contents, 0);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        context.close();
+        channel.close();
+    }
+
+    private int fileIntAt(long position) throws IOException {
+        var bytes = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+        channel.read(bytes, position);
+        return bytes.getInt(0);
+    }
+
+    @Test
+    void readWriteStoresReachTheFileAfterForce() throws Throwable {
+        var base = context.mapFile(channel, 0, channel.size(), FileChannel.MapMode.READ_WRITE);
+        assertEquals(1, (int) GET_INT.invokeExact(context, base + 8));
+        assertEquals(2, (int) GET_INT.invokeExact(context, base + context.pageSize() + 8));
+
+        SET_INT.invokeExact(context, base + context.pageSize() + 8, 3);
+        context.force(base + context.pageSize(), context.pageSize());
+        assertEquals(3, fileIntAt(context.pageSize() + 8));
+    }
+
+    @Test
+    void readOnlyMappingsRejectStores() throws Throwable {
+        var base = context.mapFile(channel, 0, channel.size(), FileChannel.MapMode.READ_ONLY);
+        assertEquals(1, (int) GET_INT.invokeExact(context, base + 8));
+        assertThrows(ReadOnlyBufferException.class, () -> {
+            SET_INT.invokeExact(context, base + 8, 3);
+        });
+
+        // Nothing to write back
+        context.force(base, channel.size());
+        assertEquals(1, fileIntAt(8));
+    }
+
+    @Test
+    void privateStoresStayInMemory() throws Throwable {
+        var base = context.mapFile(channel, 0, channel.size(), FileChannel.MapMode.PRIVATE);
+        SET_INT.invokeExact(context, base + 8, 3);
+        assertEquals(3, (int) GET_INT.invokeExact(context, base + 8));
+
+        // Copy on write pages never go back to the file
+        context.force(base, channel.size());
+        assertEquals(1, fileIntAt(8));
+    }
+
+    @Test
+    void mappingAtAnOffsetStartsAPage() throws Throwable {
+        var base = context.mapFile(channel, context.pageSize(), context.pageSize(), FileChannel.MapMode.READ_WRITE);
+        assertEquals(0, base & (context.pageSize() - 1));
+        assertEquals(2, (int) GET_INT.invokeExact(context, base + 8));
+    }
+
+    @Test
+    void badRegionsThrow() {
+        assertThrows(IllegalArgumentException.class, () -> context.mapFile(channel, -1, 1, FileChannel.MapMode.READ_ONLY));
+        assertThrows(IllegalArgumentException.class, () -> context.mapFile(channel, 0, 0, FileChannel.MapMode.READ_ONLY));
+    }
+}
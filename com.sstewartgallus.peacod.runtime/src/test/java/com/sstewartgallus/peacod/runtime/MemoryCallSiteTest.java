@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Sites from ConstantBootstraps.memory, which bypass Dynalink
+class MemoryCallSiteTest {
+    private static final MethodType GET_INT = MethodType.methodType(int.class, Context.class, int.class);
+    private static final MethodType SET_INT = MethodType.methodType(void.class, Context.class, int.class, int.class);
+
+    private Context first;
+    private Context second;
+    private Context third;
+    private int firstPage;
+    private int secondPage;
+    private int thirdPage;
+
+    private static MutableCallSite memory(String operation, MethodType type) {
+        return (MutableCallSite) ConstantBootstraps.memory(MethodHandles.lookup(), operation, type);
+    }
+
+    @BeforeEach
+    void setUp() {
+        first = Context.newInstance();
+        second = Context.newInstance();
+        third = Context.newInstance();
+        firstPage = first.anonymousPage();
+        secondPage = second.anonymousPage();
+        thirdPage = third.anonymousPage();
+    }
+
+    @AfterEach
+    void tearDown() {
+        first.close();
+        second.close();
+        third.close();
+    }
+
+    @Test
+    void bootstrapRejectsOtherOperationsAndTypes() {
+        assertThrows(IllegalArgumentException.class, () -> memory("CALL:METHOD:sum", GET_INT));
+        assertThrows(IllegalArgumentException.class, () -> memory("GET:ELEMENT:memory", SET_INT));
+        assertThrows(IllegalArgumentException.class,
+                () -> memory("GET:ELEMENT:memory", MethodType.methodType(String.class, Context.class, int.class)));
+    }
+
+    @Test
+    void firstLinkReplacesTheTarget() throws Throwable {
+        var set = memory("SET:ELEMENT:memory", SET_INT);
+        var get = memory("GET:ELEMENT:memory", GET_INT);
+        var unlinked = get.getTarget();
+
+        set.dynamicInvoker().invokeExact(first, firstPage + 8, 0x12345678);
+        assertEquals(0x12345678, (int) get.dynamicInvoker().invokeExact(first, firstPage + 8));
+        assertNotSame(unlinked, get.getTarget());
+    }
+
+    @Test
+    void chainedSiteKeepsALinkagePerContext() throws Throwable {
+        var site = new MemoryCallSite("GET:ELEMENT:memory", false, GET_INT, 8, 0);
+        var get = site.dynamicInvoker();
+        var set = memory("SET:ELEMENT:memory", SET_INT).dynamicInvoker();
+        set.invokeExact(first, firstPage, 1);
+        set.invokeExact(second, secondPage, 2);
+
+        assertEquals(1, (int) get.invokeExact(first, firstPage));
+        assertEquals(2, (int) get.invokeExact(second, secondPage));
+        var linked = site.getTarget();
+        for (var ii = 0; ii < 10; ++ii) {
+            assertEquals(1, (int) get.invokeExact(first, firstPage));
+            assertEquals(2, (int) get.invokeExact(second, secondPage));
+        }
+        assertSame(linked, site.getTarget());
+    }
+
+    @Test
+    void monomorphicSiteRelinksOnEveryContextSwitch() throws Throwable {
+        var site = new MemoryCallSite("GET:ELEMENT:memory", false, GET_INT, 1, 0);
+        var get = site.dynamicInvoker();
+        var set = memory("SET:ELEMENT:memory", SET_INT).dynamicInvoker();
+        set.invokeExact(first, firstPage, 1);
+        set.invokeExact(second, secondPage, 2);
+
+        assertEquals(1, (int) get.invokeExact(first, firstPage));
+        var linkedFirst = site.getTarget();
+        assertEquals(2, (int) get.invokeExact(second, secondPage));
+        assertNotSame(linkedFirst, site.getTarget());
+        var linkedSecond = site.getTarget();
+        assertEquals(1, (int) get.invokeExact(first, firstPage));
+        assertNotSame(linkedSecond, site.getTarget());
+    }
+
+    @Test
+    void unstableSiteLinksGenerically() throws Throwable {
+        var site = new MemoryCallSite("GET:ELEMENT:memory", false, GET_INT, 1, 3);
+        var get = site.dynamicInvoker();
+        var set = memory("SET:ELEMENT:memory", SET_INT).dynamicInvoker();
+        set.invokeExact(first, firstPage, 1);
+        set.invokeExact(second, secondPage, 2);
+        set.invokeExact(third, thirdPage, 3);
+
+        // The first link and three relinks
+        for (var ii = 0; ii < 2; ++ii) {
+            assertEquals(1, (int) get.invokeExact(first, firstPage));
+            assertEquals(2, (int) get.invokeExact(second, secondPage));
+        }
+
+        // Any context, page or page type now goes through without relinking
+        var generic = site.getTarget();
+        assertEquals(3, (int) get.invokeExact(third, thirdPage));
+        assertEquals(1, (int) get.invokeExact(first, firstPage));
+        assertEquals(0, (int) get.invokeExact(first, first.anonymousPage()));
+        var direct = Context.newInstance(Context.MIN_PAGE_SHIFT, PageBacking.AUTO);
+        try {
+            assertEquals(0, (int) get.invokeExact(direct, direct.anonymousPage()));
+        } finally {
+            direct.close();
+        }
+        assertSame(generic, site.getTarget());
+    }
+
+    @Test
+    void mixedPageTypesMissInTheGuard(@TempDir Path dir) throws Throwable {
+        var site = new MemoryCallSite("GET:ELEMENT:memory", false, GET_INT, 8, 0);
+        var get = site.dynamicInvoker();
+        var set = memory("SET:ELEMENT:memory", SET_INT).dynamicInvoker();
+        var otherPage = first.anonymousPage();
+        try (var channel = FileChannel.open(dir.resolve("pages"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var mapped = (int) first.mapFile(channel, 0, first.pageSize(), FileChannel.MapMode.READ_WRITE);
+            set.invokeExact(first, firstPage, 1);
+            set.invokeExact(first, otherPage, 2);
+            set.invokeExact(first, mapped, 3);
+
+            var misses = LinkerMetrics.INSTANCE.getGuardMisses();
+            assertEquals(1, (int) get.invokeExact(first, firstPage));
+            // Past the constant page, then past the byte array page type
+            assertEquals(2, (int) get.invokeExact(first, otherPage));
+            assertEquals(3, (int) get.invokeExact(first, mapped));
+            assertEquals(misses + 2, LinkerMetrics.INSTANCE.getGuardMisses());
+            var linked = site.getTarget();
+            for (var ii = 0; ii < 10; ++ii) {
+                assertEquals(1, (int) get.invokeExact(first, firstPage));
+                assertEquals(3, (int) get.invokeExact(first, mapped));
+            }
+            assertSame(linked, site.getTarget());
+            assertEquals(misses + 2, LinkerMetrics.INSTANCE.getGuardMisses());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+import static com.sstewartgallus.peacod.runtime.Sites.site;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PageBackingTest {
+    private static final MethodType GET_LONG = MethodType.methodType(long.class, Context.class, int.class);
+    private static final MethodType SET_LONG = MethodType.methodType(void.class, Context.class, int.class, long.class);
+
+    private static MethodHandle getLong() {
+        return site("GET:ELEMENT:memory", GET_LONG);
+    }
+
+    private static MethodHandle setLong() {
+        return site("SET:ELEMENT:memory", SET_LONG);
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void pagesStartZeroedAndKeepWhatIsStored(PageBacking backing) throws Throwable {
+        var get = getLong();
+        var set = setLong();
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var pages = new int[]{context.anonymousPage(), context.anonymousPage(), context.anonymousPage()};
+            for (var page : pages) {
+                assertEquals(0L, (long) get.invokeExact(context, page + context.pageSize() - Long.BYTES));
+                set.invokeExact(context, page + 16, (long) page);
+            }
+            for (var page : pages) {
+                assertEquals((long) page, (long) get.invokeExact(context, page + 16));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void accessesAfterUnmappingThrow(PageBacking backing) throws Throwable {
+        var get = getLong();
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var page = context.anonymousPage();
+            assertEquals(0L, (long) get.invokeExact(context, page));
+            context.unmapPage(page);
+            assertThrows(IllegalStateException.class, () -> {
+                var ignored = (long) get.invokeExact(context, page);
+            });
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void accessesAfterCloseThrow(PageBacking backing) throws Throwable {
+        var get = getLong();
+        var set = setLong();
+        // Goes generic on its first relink and then looks pages up on every access
+        var generic = new MemoryCallSite("GET:ELEMENT:memory", false, GET_LONG, 1, 1).dynamicInvoker();
+        var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing);
+        var page = context.anonymousPage();
+        var other = context.anonymousPage();
+        set.invokeExact(context, page, 3L);
+        assertEquals(3L, (long) get.invokeExact(context, page));
+        assertEquals(0L, (long) generic.invokeExact(context, other));
+        assertEquals(3L, (long) generic.invokeExact(context, page));
+
+        context.close();
+        assertThrows(IllegalStateException.class, () -> {
+            var ignored = (long) get.invokeExact(context, page);
+        });
+        assertThrows(IllegalStateException.class, () -> {
+            var ignored = (long) generic.invokeExact(context, page);
+        });
+        assertThrows(IllegalStateException.class, () -> {
+            set.invokeExact(context, page, 4L);
+        });
+        assertThrows(IllegalStateException.class, context::anonymousPage);
+        assertThrows(IllegalStateException.class, () -> context.unmapPage(page));
+        // Closing again does nothing
+        context.close();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.sstewartgallus.peacod.runtime.Sites.memorySite;
+import static com.sstewartgallus.peacod.runtime.Sites.site;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PageShiftTest {
+    private static final MethodHandle GET_INT = memorySite("GET:ELEMENT:memory", MethodType.methodType(int.class, Context.class, int.class));
+    private static final MethodHandle SET_INT = memorySite("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, int.class, int.class));
+    private static final MethodHandle GET_LONG_ADDR = memorySite("GET:ELEMENT:memory", MethodType.methodType(int.class, Context.class, long.class));
+    private static final MethodHandle SET_LONG_ADDR = memorySite("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, long.class, int.class));
+
+    @Test
+    void shiftsOutOfRangeThrow() {
+        assertThrows(IllegalArgumentException.class, () -> Context.newInstance(Context.MIN_PAGE_SHIFT - 1));
+        assertThrows(IllegalArgumentException.class, () -> Context.newInstance(Context.MAX_PAGE_SHIFT + 1));
+    }
+
+    @Test
+    void defaultIsTheSmallestShift() {
+        try (var context = Context.newInstance()) {
+            assertEquals(Context.MIN_PAGE_SHIFT, context.pageShift());
+            assertEquals(1 << Context.MIN_PAGE_SHIFT, context.pageSize());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {Context.MIN_PAGE_SHIFT, 13, 16, 20})
+    void pagesAreAsBigAsTheShift(int shift) throws Throwable {
+        try (var context = Context.newInstance(shift)) {
+            assertEquals(shift, context.pageShift());
+            assertEquals(1 << shift, context.pageSize());
+
+            var first = context.anonymousPage();
+            var second = context.anonymousPage();
+            assertEquals(first + context.pageSize(), second);
+
+            var last = second - Integer.BYTES;
+            SET_INT.invokeExact(context, last, 1);
+            SET_INT.invokeExact(context, second, 2);
+            assertEquals(1, (int) GET_INT.invokeExact(context, last));
+            assertEquals(2, (int) GET_INT.invokeExact(context, second));
+            assertEquals(0, (int) GET_INT.invokeExact(context, first));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {Context.MIN_PAGE_SHIFT, 16})
+    void sumsOverWholeAndStraddledPages(int shift) throws Throwable {
+        try (var context = Context.newInstance(shift)) {
+            var ints = context.pageSize() / Integer.BYTES;
+            var first = context.anonymousPage();
+            var second = context.anonymousPage();
+            for (var ii = 0; ii < 2 * ints; ++ii) {
+                SET_INT.invokeExact(context, first + ii * Integer.BYTES, 1);
+            }
+
+            // A page worth of ints takes the fast path, half in each page the cross-page one
+            var whole = site("CALL:METHOD:sum", MethodType.methodType(int.class, Context.class, int.class), "I", ints);
+            assertEquals(ints, (int) whole.invokeExact(context, first));
+            assertEquals(ints, (int) whole.invokeExact(context, second - context.pageSize() / 2));
+        }
+    }
+
+    @Test
+    void maximumShiftMapsGiBPages(@TempDir Path dir) throws Throwable {
+        var size = 2L << Context.MAX_PAGE_SHIFT;
+        // Anonymous 1 GiB pages would need a 1 GiB heap, the sparse file takes no space
+        try (var context = Context.newInstance(Context.MAX_PAGE_SHIFT);
+             var channel = FileChannel.open(dir.resolve("pages"),
+                     StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            assertEquals(1 << Context.MAX_PAGE_SHIFT, context.pageSize());
+            channel.write(ByteBuffer.allocate(1), size - 1);
+            var base = context.mapFile(channel, 0, size, FileChannel.MapMode.READ_WRITE);
+            var second = base + context.pageSize();
+
+            SET_LONG_ADDR.invokeExact(context, second - Integer.BYTES, 1);
+            SET_LONG_ADDR.invokeExact(context, second, 2);
+            assertEquals(1, (int) GET_LONG_ADDR.invokeExact(context, second - Integer.BYTES));
+            assertEquals(2, (int) GET_LONG_ADDR.invokeExact(context, second));
+        }
+    }
+}
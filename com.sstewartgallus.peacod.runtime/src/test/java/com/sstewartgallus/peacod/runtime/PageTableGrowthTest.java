@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+// Appending pages must never invalidate linked call sites, even when the
+// page tables grow a chunk or double their directory
+class PageTableGrowthTest {
+    private static final MethodType GET_INT = MethodType.methodType(int.class, Context.class, int.class);
+    private static final MethodType SET_INT = MethodType.methodType(void.class, Context.class, int.class, int.class);
+
+    private static MutableCallSite memory(String operation, MethodType type) {
+        return (MutableCallSite) ConstantBootstraps.memory(MethodHandles.lookup(), operation, type);
+    }
+
+    @Test
+    void appendingPagesKeepsLinkedSites() throws Throwable {
+        // One page bound in as a constant, and sites past that which look pages up in the tables
+        var constantGet = memory("GET:ELEMENT:memory", GET_INT);
+        var tableGet = memory("GET:ELEMENT:memory", GET_INT);
+        var tableSet = memory("SET:ELEMENT:memory", SET_INT);
+        try (var context = Context.newInstance()) {
+            var first = context.anonymousPage();
+            var second = context.anonymousPage();
+            tableSet.dynamicInvoker().invokeExact(context, first, 1);
+            tableSet.dynamicInvoker().invokeExact(context, second, 2);
+            assertEquals(1, (int) constantGet.dynamicInvoker().invokeExact(context, first));
+            assertEquals(1, (int) tableGet.dynamicInvoker().invokeExact(context, first));
+            assertEquals(2, (int) tableGet.dynamicInvoker().invokeExact(context, second));
+
+            var constantTarget = constantGet.getTarget();
+            var getTarget = tableGet.getTarget();
+            var setTarget = tableSet.getTarget();
+            var invalidations = LinkerMetrics.INSTANCE.getInvalidations();
+
+            // Past the initial directory, one page at a time and then a span in one go
+            var pages = 2 * PageTables.CHUNK_SIZE * PageTables.INITIAL_CHUNKS;
+            var last = second;
+            for (var ii = 0; ii < pages; ++ii) {
+                last = context.anonymousPage();
+            }
+            var span = context.malloc(PageTables.CHUNK_SIZE * context.pageSize());
+
+            assertEquals(invalidations, LinkerMetrics.INSTANCE.getInvalidations());
+            assertEquals(1, (int) constantGet.dynamicInvoker().invokeExact(context, first));
+            tableSet.dynamicInvoker().invokeExact(context, last, 3);
+            tableSet.dynamicInvoker().invokeExact(context, span + context.pageSize(), 4);
+            assertEquals(2, (int) tableGet.dynamicInvoker().invokeExact(context, second));
+            assertEquals(3, (int) tableGet.dynamicInvoker().invokeExact(context, last));
+            assertEquals(4, (int) tableGet.dynamicInvoker().invokeExact(context, span + context.pageSize()));
+            assertSame(constantTarget, constantGet.getTarget());
+            assertSame(getTarget, tableGet.getTarget());
+            assertSame(setTarget, tableSet.getTarget());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.sstewartgallus.peacod.runtime.Sites.GET_BYTE;
+import static com.sstewartgallus.peacod.runtime.Sites.SET_BYTE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RegionTest {
+    private Context context;
+    private Region region;
+
+    @BeforeEach
+    void setUp() {
+        context = Context.newInstance();
+        region = context.newRegion();
+    }
+
+    @AfterEach
+    void tearDown() {
+        region.close();
+        context.close();
+    }
+
+    @Test
+    void allocationsAreAlignedAndDistinct() {
+        var first = region.allocate(0);
+        var second = region.allocate(1);
+        var third = region.allocate(9);
+        assertEquals(0, first % Long.BYTES);
+        assertEquals(first + Long.BYTES, second);
+        assertEquals(second + Long.BYTES, third);
+        assertEquals(0, region.allocate(3) % Long.BYTES);
+    }
+
+    @Test
+    void allocationsLargerThanAPageGetTheirOwnSpan() throws Throwable {
+        var size = 3 * context.pageSize();
+        var addr = region.allocate(size);
+        SET_BYTE.invokeExact(context, addr + size - 1, (byte) 5);
+        assertEquals((byte) 5, (byte) GET_BYTE.invokeExact(context, addr + size - 1));
+    }
+
+    @Test
+    void resetReusesMemoryAfterTheMark() {
+        region.allocate(16);
+        var mark = region.mark();
+        var first = region.allocate(32);
+        region.allocate(2 * context.pageSize());
+        region.reset(mark);
+        assertEquals(first, region.allocate(32));
+    }
+
+    @Test
+    void marksResetInStackOrder() {
+        var outer = region.mark();
+        var a = region.allocate(8);
+        var inner = region.mark();
+        var b = region.allocate(8);
+        region.reset(inner);
+        assertEquals(b, region.allocate(8));
+        region.reset(outer);
+        assertEquals(a, region.allocate(8));
+    }
+
+    @Test
+    void marksPastTheResetAreStale() {
+        region.allocate(8);
+        var outer = region.mark();
+        region.allocate(context.pageSize());
+        var inner = region.mark();
+        region.reset(outer);
+        assertThrows(IllegalArgumentException.class, () -> region.reset(inner));
+
+        // Two new spans again, which can reuse the released page ids
+        region.reset(0);
+        region.allocate(8);
+        region.allocate(context.pageSize());
+        assertThrows(IllegalArgumentException.class, () -> region.reset(inner));
+    }
+
+    @Test
+    void marksAheadOfTheTopAreStale() {
+        region.allocate(8);
+        var outer = region.mark();
+        region.allocate(8);
+        var inner = region.mark();
+        region.reset(outer);
+        // Same span as the top but past it
+        assertThrows(IllegalArgumentException.class, () -> region.reset(inner));
+        region.reset(outer);
+    }
+
+    @Test
+    void closedRegionsRejectAllocations() {
+        region.close();
+        assertThrows(IllegalStateException.class, () -> region.allocate(8));
+        // Closing twice is harmless
+        region.close();
+    }
+
+    @Test
+    void negativeSizesThrow() {
+        assertThrows(IllegalArgumentException.class, () -> region.allocate(-1));
+    }
+
+    @Test
+    void closingGivesPagesBackForTrim() throws Throwable {
+        var addr = region.allocate(8);
+        SET_BYTE.invokeExact(context, addr, (byte) 1);
+        region.close();
+        context.trim();
+        assertThrows(IllegalStateException.class, () -> {
+            var ignored = (byte) GET_BYTE.invokeExact(context, addr);
+        });
+    }
+
+    @Test
+    void separateRegionsDoNotShareMemory() {
+        try (var other = context.newRegion()) {
+            assertNotEquals(region.allocate(8), other.allocate(8));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+// Call sites bootstrapped the way indified code would get them
+final class Sites {
+    static final MethodHandle GET_BYTE = site("GET:ELEMENT:memory", MethodType.methodType(byte.class, Context.class, int.class));
+    static final MethodHandle SET_BYTE = site("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, int.class, byte.class));
+
+    private Sites() {
+
+    }
+
+    static MethodHandle site(String operation, MethodType type, Object... args) {
+        return ConstantBootstraps.bootstrap(MethodHandles.lookup(), operation, type, args).dynamicInvoker();
+    }
+
+    // Memory gets and sets the way ContextCalls.Get and Set link them
+    static MethodHandle memorySite(String operation, MethodType type) {
+        return ConstantBootstraps.memory(MethodHandles.lookup(), operation, type).dynamicInvoker();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+import static com.sstewartgallus.peacod.runtime.Sites.memorySite;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypedAccessTest {
+    private static MethodHandle get(Class<?> type) {
+        return memorySite("GET:ELEMENT:memory", MethodType.methodType(type, Context.class, int.class));
+    }
+
+    private static MethodHandle set(Class<?> type) {
+        return memorySite("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, int.class, type));
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void floatsKeepTheirBits(PageBacking backing) throws Throwable {
+        var getFloat = get(float.class);
+        var setFloat = set(float.class);
+        var getInt = get(int.class);
+        var oddNaN = Float.intBitsToFloat(0x7FC01234);
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var page = context.anonymousPage();
+            setFloat.invokeExact(context, page + 4, 1.5F);
+            assertEquals(1.5F, (float) getFloat.invokeExact(context, page + 4));
+            assertEquals(Float.floatToRawIntBits(1.5F), (int) getInt.invokeExact(context, page + 4));
+
+            setFloat.invokeExact(context, page + 8, oddNaN);
+            assertEquals(0x7FC01234, Float.floatToRawIntBits((float) getFloat.invokeExact(context, page + 8)));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void doublesKeepTheirBits(PageBacking backing) throws Throwable {
+        var getDouble = get(double.class);
+        var setDouble = set(double.class);
+        var getLong = get(long.class);
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var page = context.anonymousPage();
+            setDouble.invokeExact(context, page + 16, -0.0);
+            assertEquals(Double.doubleToRawLongBits(-0.0), (long) getLong.invokeExact(context, page + 16));
+            setDouble.invokeExact(context, page + 24, Math.PI);
+            assertEquals(Math.PI, (double) getDouble.invokeExact(context, page + 24));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void charsAreUnsignedAndShortsSigned(PageBacking backing) throws Throwable {
+        var getChar = get(char.class);
+        var setChar = set(char.class);
+        var getShort = get(short.class);
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var page = context.anonymousPage();
+            setChar.invokeExact(context, page + 2, (char) 0xFFFE);
+            assertEquals((char) 0xFFFE, (char) getChar.invokeExact(context, page + 2));
+            assertEquals((short) -2, (short) getShort.invokeExact(context, page + 2));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PageBacking.class)
+    void booleansAndBytes(PageBacking backing) throws Throwable {
+        var getBoolean = get(boolean.class);
+        var setBoolean = set(boolean.class);
+        var getByte = get(byte.class);
+        var setByte = set(byte.class);
+        try (var context = Context.newInstance(Context.MIN_PAGE_SHIFT, backing)) {
+            var page = context.anonymousPage();
+            setBoolean.invokeExact(context, page, true);
+            assertEquals((byte) 1, (byte) getByte.invokeExact(context, page));
+            setByte.invokeExact(context, page + 1, (byte) -7);
+            assertTrue((boolean) getBoolean.invokeExact(context, page + 1));
+            assertFalse((boolean) getBoolean.invokeExact(context, page + 2));
+        }
+    }
+}
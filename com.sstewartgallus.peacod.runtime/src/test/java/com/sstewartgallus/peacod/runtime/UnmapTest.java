@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019 Steven Stewart-Gallus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sstewartgallus.peacod.runtime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+import static com.sstewartgallus.peacod.runtime.Sites.site;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UnmapTest {
+    private Context context;
+
+    private static MethodHandle getInt() {
+        return site("GET:ELEMENT:memory", MethodType.methodType(int.class, Context.class, int.class));
+    }
+
+    private static MethodHandle setInt() {
+        return site("SET:ELEMENT:memory", MethodType.methodType(void.class, Context.class, int.class, int.class));
+    }
+
+    @BeforeEach
+    void setUp() {
+        context = Context.newInstance();
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void unmappingBreaksConstantPageSiteAndReuseRelinks() throws Throwable {
+        var get = getInt();
+        var set = setInt();
+        var page = context.anonymousPage();
+        set.invokeExact(context, page + 4, 5);
+        // Both sites have only touched the one page, so it is bound in as a constant
+        assertEquals(5, (int) get.invokeExact(context, page + 4));
+
+        context.unmapPage(page);
+        assertThrows(IllegalStateException.class, () -> {
+            var ignored = (int) get.invokeExact(context, page + 4);
+        });
+        assertThrows(IllegalStateException.class, () -> {
+            set.invokeExact(context, page + 4, 6);
+        });
+
+        assertEquals(page, context.anonymousPage());
+        assertEquals(0, (int) get.invokeExact(context, page + 4));
+        set.invokeExact(context, page + 4, 7);
+        assertEquals(7, (int) get.invokeExact(context, page + 4));
+    }
+
+    @Test
+    void neverMappedPagesThrowWithASolePageType() throws Throwable {
+        var get = getInt();
+        var first = context.anonymousPage();
+        var second = context.anonymousPage();
+        // Two pages seen so the site binds in the sole page type instead of a constant page
+        assertEquals(0, (int) get.invokeExact(context, first));
+        assertEquals(0, (int) get.invokeExact(context, second));
+        assertThrows(IllegalStateException.class, () -> {
+            var ignored = (int) get.invokeExact(context, second + 2 * context.pageSize());
+        });
+    }
+
+    @Test
+    void unmappingTwiceThrows() {
+        var page = context.anonymousPage();
+        context.unmapPage(page);
+        assertThrows(IllegalArgumentException.class, () -> context.unmapPage(page));
+    }
+
+    @Test
+    void trimUnmapsFreeSpansWithOneInvalidation() throws Throwable {
+        var get = getInt();
+        var spans = new int[]{
+                context.malloc(2 * context.pageSize()),
+                context.malloc(3 * context.pageSize()),
+                context.malloc(5 * context.pageSize())
+        };
+        for (var span : spans) {
+            assertEquals(0, (int) get.invokeExact(context, span));
+            context.free(span);
+        }
+
+        var invalidations = LinkerMetrics.INSTANCE.getInvalidations();
+        context.trim();
+        assertEquals(invalidations + 1, LinkerMetrics.INSTANCE.getInvalidations());
+        for (var span : spans) {
+            assertThrows(IllegalStateException.class, () -> {
+                var ignored = (int) get.invokeExact(context, span);
+            });
+        }
+
+        context.trim();
+        assertEquals(invalidations + 1, LinkerMetrics.INSTANCE.getInvalidations());
+    }
+
+    @Test
+    void freeingNoPagesKeepsLinkedSites() throws Throwable {
+        var get = getInt();
+        var page = context.anonymousPage();
+        assertEquals(0, (int) get.invokeExact(context, page));
+
+        var invalidations = LinkerMetrics.INSTANCE.getInvalidations();
+        context.freePages(page, 0);
+        assertEquals(invalidations, LinkerMetrics.INSTANCE.getInvalidations());
+        // Still validated
+        assertThrows(IllegalArgumentException.class, () -> context.freePages(page + 1, 0));
+        assertEquals(0, (int) get.invokeExact(context, page));
+    }
+}